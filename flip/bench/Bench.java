@@ -0,0 +1,123 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import flip.sim.Board;
+import flip.sim.Point;
+import javafx.util.Pair;
+
+// Timing harness shared by the benchmarks. An operation is run for a warmup period so
+// the JIT settles, then in batches (grown until one batch takes about a millisecond)
+// for a measurement period; the mean time and allocation per call are reported.
+class Bench
+{
+    static final long warmup_nanos = 300000000L;
+    static final long measure_nanos = 1000000000L;
+
+    // results go here so the JIT cannot drop the work
+    static volatile Object sink;
+
+    // Returns {ns/op, bytes allocated/op}.
+    static long[] measure(Runnable op)
+    {
+        return measure(op, warmup_nanos, measure_nanos);
+    }
+
+    static long[] measure(Runnable op, long warmup, long duration)
+    {
+        run(op, warmup);
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        long calls = run(op, duration);
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        return new long[] {elapsed / calls, bytes / calls};
+    }
+
+    private static long run(Runnable op, long duration)
+    {
+        long calls = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+        do
+        {
+            long batch_start = System.nanoTime();
+            for (int i = 0; i < batch; i++)
+                op.run();
+            calls += batch;
+            long now = System.nanoTime();
+            if (now - batch_start < 1000000L && batch < (1 << 20))
+                batch *= 2;
+            elapsed = now - start;
+        } while (elapsed < duration);
+        return calls;
+    }
+
+    static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    // A board with n pieces a side after `moves` random single steps of each player,
+    // so that pieces are spread out the way they are in the middle of a game.
+    static Board midgame(int n, int seed, int moves)
+    {
+        Board board = new Board(n, seed);
+        Random random = new Random(seed);
+        double diameter = Board.get_diameter_piece();
+        for (int i = 0; i < moves; i++)
+        {
+            boolean isplayer1 = i % 2 == 0;
+            Pair<Integer, Point> move = step(board, random, isplayer1, diameter);
+            if (board.check_valid_move(move, isplayer1))
+                board.move_piece(move, isplayer1);
+        }
+        return board;
+    }
+
+    // count random moves of one piece diameter forward, some of which collide.
+    static List<Pair<Integer, Point>> moves(Board board, int seed, boolean isplayer1, int count)
+    {
+        Random random = new Random(seed);
+        List<Pair<Integer, Point>> moves = new ArrayList<Pair<Integer, Point>>();
+        for (int i = 0; i < count; i++)
+            moves.add(step(board, random, isplayer1, Board.get_diameter_piece()));
+        return moves;
+    }
+
+    private static Pair<Integer, Point> step(Board board, Random random, boolean isplayer1, double diameter)
+    {
+        int id = random.nextInt(board.get_num_pieces());
+        double theta = -Math.PI / 2 + Math.PI * random.nextDouble();
+        double dx = diameter * Math.cos(theta);
+        double x = board.get_x(isplayer1, id) + (isplayer1 ? -dx : dx);
+        double y = board.get_y(isplayer1, id) + diameter * Math.sin(theta);
+        return new Pair<Integer, Point>(id, new Point(x, y));
+    }
+
+    static HashMap<Integer, Point> copy(HashMap<Integer, Point> pieces)
+    {
+        HashMap<Integer, Point> copy = new HashMap<Integer, Point>();
+        for (HashMap.Entry<Integer, Point> entry : pieces.entrySet())
+            copy.put(entry.getKey(), new Point(entry.getValue()));
+        return copy;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.bench;
+
+import java.util.HashMap;
+import java.util.List;
+
+import flip.sim.Board;
+import flip.sim.GameState;
+import flip.sim.MoveValidator;
+import flip.sim.Point;
+import flip.sim.PointMap;
+import javafx.util.Pair;
+
+// Times the Board operations the simulator runs on every turn.
+// Run with: java flip.bench.CoreBenchmark [n ...]
+//
+// The default sizes stop at 250: the starting area of a side cannot hold many more pieces.
+public class CoreBenchmark
+{
+    private static final int[] default_sizes = {10, 30, 100, 250};
+
+    public static void main(String[] args)
+    {
+        int[] sizes = default_sizes;
+        if (args.length > 0)
+        {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.println("n\tbenchmark\t\tns/op\tB/op");
+        for (int n : sizes)
+        {
+            final Board board = Bench.midgame(n, 42, 20 * n);
+            final List<Pair<Integer, Point>> player1_moves = Bench.moves(board, 1, true, 1024);
+            final List<Pair<Integer, Point>> player2_moves = Bench.moves(board, 2, false, 1024);
+
+            report(n, "construction\t", new Runnable() {
+                private int seed = 0;
+                public void run() {
+                    Bench.sink = new Board(n, seed++);
+                }
+            });
+            report(n, "check_valid_move", new Runnable() {
+                private int i = 0;
+                public void run() {
+                    i = (i + 1) & 1023;
+                    Bench.sink = board.check_valid_move(player1_moves.get(i), true);
+                    Bench.sink = board.check_valid_move(player2_moves.get(i), false);
+                }
+            });
+            final HashMap<Integer, Point> player1_pieces = board.snapshot(true);
+            final HashMap<Integer, Point> player2_pieces = board.snapshot(false);
+            report(n, "check_collision\t", new Runnable() {
+                private int i = 0;
+                public void run() {
+                    i = (i + 1) & 1023;
+                    Pair<Integer, Point> move = player1_moves.get(i);
+                    Bench.sink = Board.check_collision(player1_pieces, move) || Board.check_collision(player2_pieces, move);
+                }
+            });
+            // building the validator is part of every getMoves call, so it is counted here
+            // spread over the 30 candidates a random player tries per call
+            report(n, "MoveValidator\t", new Runnable() {
+                private int i = 0;
+                private MoveValidator validator;
+                public void run() {
+                    if (i % 30 == 0)
+                        validator = new MoveValidator(player1_pieces, player2_pieces);
+                    i = (i + 1) & 1023;
+                    Bench.sink = validator.is_valid(player1_moves.get(i));
+                }
+            });
+            final GameState state = new GameState(board);
+            report(n, "GameState play/undo", new Runnable() {
+                private int i = 0;
+                public void run() {
+                    i = (i + 1) & 1023;
+                    int mark = state.mark();
+                    state.play(player1_moves.get(i), true);
+                    state.play(player2_moves.get(i), false);
+                    Bench.sink = state.get_score(true) - state.get_score(false);
+                    state.undo(mark);
+                }
+            });
+            report(n, "GameState fork\t", () -> {
+                Bench.sink = state.fork();
+            });
+            report(n, "get_score\t", () -> {
+                Bench.sink = board.get_score(true);
+                Bench.sink = board.get_score(false);
+            });
+            // lookups of every piece position, worked out again as players do when they
+            // keep data per position
+            final Point[] positions = new Point[2 * n];
+            final HashMap<Point, Double> hash_map = new HashMap<Point, Double>();
+            final PointMap point_map = new PointMap(2 * n);
+            for (int i = 0; i < 2 * n; i++)
+            {
+                positions[i] = new Point(board.get_x(i < n, i % n), board.get_y(i < n, i % n));
+                hash_map.put(positions[i], (double) i);
+                point_map.put(positions[i], i);
+            }
+            report(n, "HashMap<Point> put/get", new Runnable() {
+                private int i = 0;
+                public void run() {
+                    i = (i + 1) % positions.length;
+                    hash_map.put(positions[i], (double) i);
+                    Bench.sink = hash_map.get(new Point(positions[i].x, positions[i].y)) >= 0;
+                }
+            });
+            report(n, "PointMap put/get", new Runnable() {
+                private int i = 0;
+                public void run() {
+                    i = (i + 1) % positions.length;
+                    point_map.put(positions[i], i);
+                    Bench.sink = point_map.get(positions[i].x, positions[i].y, -1) >= 0;
+                }
+            });
+            report(n, "snapshot\t", () -> {
+                Bench.sink = board.snapshot(true);
+                Bench.sink = board.snapshot(false);
+            });
+        }
+    }
+
+    private static void report(int n, String name, Runnable op)
+    {
+        long[] result = Bench.measure(op);
+        System.out.println(n + "\t" + name + "\t" + result[0] + "\t" + result[1]);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import flip.sim.Board;
+import flip.sim.Player;
+import flip.sim.Point;
+import flip.sim.Simulator;
+
+// Times getMoves of every player on a fixed set of mid-game positions, as player 1 and
+// as player 2. Players are compiled and loaded the way the simulator does it.
+// Run from the repository root with: java flip.bench.PlayerBenchmark [player ...]
+//
+// Each player is measured in a JVM of its own, since a player that does not return
+// from getMoves cannot be stopped; a call that takes longer than the simulator's time
+// limit ends the measurements of that player. Each position gets a fresh instance that
+// then keeps whatever state it builds up between calls, as in a game. Players that pick
+// moves at random without a fixed seed give different numbers from run to run.
+// Whatever the players print is discarded.
+public class PlayerBenchmark
+{
+    private static final int n = 30;
+    private static final int turns = 1000;
+    // {board seed, random moves played before the position is taken}
+    private static final int[][] positions = {{1, 100}, {2, 400}, {3, 1000}};
+
+    private static final long timeout_millis = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        List<String> players = new ArrayList<String>(Arrays.asList(args));
+        if (players.isEmpty())
+            for (File dir : new File("flip").listFiles())
+                if (new File(dir, "Player.java").exists() && !dir.getName().equals("sim"))
+                    players.add(dir.getName());
+        players.sort(null);
+
+        System.out.println("player\tposition\tside\tns/op\tB/op");
+        if (players.size() == 1)
+            bench(players.get(0));
+        else
+            for (String name : players)
+                fork(name);
+        System.exit(0);
+    }
+
+    // Runs the benchmark of one player in a new JVM and copies its results.
+    private static void fork(String name) throws IOException, InterruptedException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), PlayerBenchmark.class.getName(), name);
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        in.readLine();
+        String line;
+        while ((line = in.readLine()) != null)
+            System.out.println(line);
+        process.waitFor();
+    }
+
+    private static void bench(String name)
+    {
+        List<Board> boards = new ArrayList<Board>();
+        for (int[] position : positions)
+            boards.add(Bench.midgame(n, position[0], position[1]));
+
+        PrintStream out = System.out;
+        PrintStream discard = new PrintStream(new OutputStream() {
+            public void write(int b) {}
+            public void write(byte[] b, int off, int len) {}
+        });
+        System.setOut(discard);
+        System.setErr(discard);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "flip-bench");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long limit = TimeUnit.NANOSECONDS.toMillis(Bench.warmup_nanos + Bench.measure_nanos) + 2 * timeout_millis;
+        for (int p = 0; p < boards.size(); p++)
+            for (boolean isplayer1 : new boolean[] {true, false})
+            {
+                String row = name + "\t" + positions[p][0] + "/" + positions[p][1] + "\t\t" + (isplayer1 ? "1" : "2");
+                try
+                {
+                    // compiles the player if needed, outside of the time limit
+                    Player player = Simulator.loadPlayer(name);
+                    Board board = boards.get(p);
+                    long[] result = executor.submit(() -> measure(player, board, isplayer1)).get(limit, TimeUnit.MILLISECONDS);
+                    out.println(row + "\t" + result[0] + "\t" + result[1]);
+                }
+                catch (TimeoutException ex)
+                {
+                    out.println(row + "\ttimed out: a call took more than " + timeout_millis + " ms");
+                    return;
+                }
+                catch (ExecutionException ex)
+                {
+                    out.println(row + "\tfailed: " + ex.getCause());
+                }
+                catch (Exception | LinkageError ex)
+                {
+                    out.println(row + "\tfailed: " + ex);
+                }
+            }
+    }
+
+    private static long[] measure(Player player, Board board, boolean isplayer1)
+    {
+        final HashMap<Integer, Point> own = board.snapshot(isplayer1);
+        final HashMap<Integer, Point> opponent = board.snapshot(!isplayer1);
+        player.init(Bench.copy(own), n, turns, isplayer1, Board.get_diameter_piece());
+        return Bench.measure(() -> {
+            Bench.sink = player.getMoves(2, Bench.copy(own), Bench.copy(opponent), isplayer1);
+        });
+    }
+}
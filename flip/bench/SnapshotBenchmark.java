@@ -0,0 +1,65 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.bench;
+
+import java.io.*;
+import java.util.HashMap;
+
+import flip.sim.Board;
+import flip.sim.Point;
+
+// Compares the serialization based deep copy the simulator used to hand out piece maps
+// with Board.snapshot. Run with: java flip.bench.SnapshotBenchmark
+public class SnapshotBenchmark
+{
+    private static final int[] sizes = {10, 30, 100, 200};
+
+    public static void main(String[] args)
+    {
+        System.out.println("n\tdeepClone ns/op\tdeepClone B/op\tsnapshot ns/op\tsnapshot B/op\tspeedup");
+        for (int n : sizes)
+        {
+            Board board = new Board(n, 42);
+            HashMap<Integer, Point> player1 = new HashMap<Integer, Point>(board.get_pieces(true));
+            HashMap<Integer, Point> player2 = new HashMap<Integer, Point>(board.get_pieces(false));
+
+            long[] clone = Bench.measure(() -> {
+                Bench.sink = deepClone(player1);
+                Bench.sink = deepClone(player2);
+            });
+            long[] snapshot = Bench.measure(() -> {
+                Bench.sink = board.snapshot(true);
+                Bench.sink = board.snapshot(false);
+            });
+
+            System.out.println(n + "\t" + clone[0] + "\t\t" + clone[1] + "\t\t" + snapshot[0] + "\t\t" + snapshot[1]
+                + "\t\t" + String.format("%.1fx", (double) clone[0] / snapshot[0]));
+        }
+    }
+
+    // The copy Simulator.deepClone used to make, kept here as the baseline.
+    @SuppressWarnings("unchecked")
+    private static <T> T deepClone(T object)
+    {
+        try {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+            objectOutputStream.writeObject(object);
+            ByteArrayInputStream bais = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+            ObjectInputStream objectInputStream = new ObjectInputStream(bais);
+            return (T) objectInputStream.readObject();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import java.util.List;
 import javafx.util.Pair;
 
 import flip.sim.Point;
+import flip.sim.PointIntMap;
+import flip.sim.PointSet;
 import flip.sim.Board;
 import flip.sim.Log;
 import java.util.Arrays;
@@ -37,7 +39,7 @@ public class Player implements flip.sim.Player
 
     private static final List<Double> BLOCKADE_YCOORD = new ArrayList<>(Arrays.asList(B1, B2, B3, B4, B5, B6, B7, B8, B9, B10, B11));
     private List<Point> blockadeList = new ArrayList<>();
-    private Map<Point, Integer> blockadeMap = new HashMap<>();
+    private PointIntMap blockadeMap = new PointIntMap();
 
 
 	public Player()
@@ -157,7 +159,7 @@ public class Player implements flip.sim.Player
 
 	private Integer getPieceNotInBlockade() {
         for (int i = 0; i < this.n; i++) {
-            if (!this.blockadeMap.values().contains(i)) {
+            if (!this.blockadeMap.contains_value(i)) {
                 return i;
             }
         }
@@ -349,7 +351,7 @@ public class Player implements flip.sim.Player
         // Compute the minimum weight bipartite matching for a better solution
         for (Point target : blockade) {
             // Find the nearest piece behind the blockade and move it towards the blockade point
-            Integer id = this.blockadeMap.get(target);
+            int id = this.blockadeMap.get(target, -1);
             Point current = player_pieces.get(id);
             System.out.println("Start: " + " x: " + current.x + " y: " + current.y);
             System.out.println("Target: " + " x: " + target.x + " y: " + target.y);
@@ -386,7 +388,7 @@ public class Player implements flip.sim.Player
     }
 
     private void removeOccupiedBlockadePoints(Map<Integer, Point> player_pieces) {
-        Set<Point> blockade_filled = new HashSet<>();
+        PointSet blockade_filled = new PointSet(this.blockadeList.size());
         for (Point blockade: this.blockadeList) {
             for (Point piece: player_pieces.values()) {
                 if (getDistance(blockade, piece) < EPSILON) {
@@ -394,13 +396,11 @@ public class Player implements flip.sim.Player
                 }
             }
         }
-        for (Point filled: blockade_filled) {
-            this.blockadeList.remove(filled);
-        }
+        this.blockadeList.removeIf(blockade -> blockade_filled.contains(blockade));
     }
 
     private void computeBlockadeMap(HashMap<Integer, Point> player_pieces, boolean isplayer1) {
-        this.blockadeMap = new HashMap<>();
+        this.blockadeMap.clear();
         // This is just to create a deep copy of available pieces, to prevent re-using the same piece in the blockade
         Set<Integer> unused_pieces = player_pieces.keySet().stream().collect(Collectors.toSet());
         for (Point target: blockadeList) {
@@ -417,8 +417,9 @@ public class Player implements flip.sim.Player
             this.blockadeMap.put(target, best_piece);
             unused_pieces.remove(best_piece);
         }
-        for (Map.Entry<Point, Integer> entry: this.blockadeMap.entrySet()) {
-            System.out.println("Point ID: " + entry.getValue() + " Current: " + player_pieces.get(entry.getValue()).x + " " + player_pieces.get(entry.getValue()).y + " Target: " + entry.getKey().x + " " + entry.getKey().y);
+        for (int slot = this.blockadeMap.first(); slot >= 0; slot = this.blockadeMap.next(slot)) {
+            int id = this.blockadeMap.value(slot);
+            System.out.println("Point ID: " + id + " Current: " + player_pieces.get(id).x + " " + player_pieces.get(id).y + " Target: " + this.blockadeMap.x(slot) + " " + this.blockadeMap.y(slot));
         }
     }
 
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import flip.sim.Point;
 import flip.sim.Board;
 import flip.sim.Log;
+import flip.sim.MoveValidator;
 
 public class Player implements flip.sim.Player
 {
@@ -39,6 +40,7 @@ public class Player implements flip.sim.Player
 	public List<Pair<Integer, Point>> getMoves(Integer num_moves, HashMap<Integer, Point> player_pieces, HashMap<Integer, Point> opponent_pieces, boolean isplayer1)
 	{
 		 List<Pair<Integer, Point>> moves = new ArrayList<Pair<Integer, Point>>();
+		 MoveValidator validator = new MoveValidator(player_pieces, opponent_pieces);
 
 		 int num_trials = 30;
 		 int i = 0;
@@ -65,31 +67,11 @@ public class Player implements flip.sim.Player
 		 	// System.out.println("distance from previous position is " + dist.toString());
 		 	// Log.record("distance from previous position is " + dist.toString());
 
-		 	if(check_validity(move, player_pieces, opponent_pieces))
+		 	if(validator.is_valid(move))
 		 		moves.add(move);
 		 	i++;
 		 }
 		 
 		 return moves;
 	}
-
-	public boolean check_validity(Pair<Integer, Point> move, HashMap<Integer, Point> player_pieces, HashMap<Integer, Point> opponent_pieces)
-    {
-        boolean valid = true;
-       
-        // check if move is adjacent to previous position.
-        if(!Board.almostEqual(Board.getdist(player_pieces.get(move.getKey()), move.getValue()), diameter_piece))
-            {
-                return false;
-            }
-        // check for collisions
-        valid = valid && !Board.check_collision(player_pieces, move);
-        valid = valid && !Board.check_collision(opponent_pieces, move);
-
-        // check within bounds
-        valid = valid && Board.check_within_bounds(move);
-        return valid;
-
-    }
 }
-
@@ -21,80 +21,247 @@ import javafx.util.Pair;
 import java.util.HashMap; 
 import java.util.Map; 
 import java.util.*;
-import java.util.HashSet;
 
 public class Board 
 {
 
     private Integer num_pieces;
     private Random r;
-    private static double diameter_piece;
-    private static double eps;
-    private static double x_min, x_max, y_min,y_max;
-    private double init_offset_x;
-    public HashMap<Integer, Point> player1;
-    public HashMap<Integer, Point> player2;
-    private Set<String> pieces_offsets;
+    // arena, zones, piece size and lattice of this board
+    private BoardConfig config;
+    // piece positions, indexed by piece id
+    private double[] player1_xs, player1_ys;
+    private double[] player2_xs, player2_ys;
+    private int placed;
+    // index of all pieces on the board; player 1 piece i is stored as i, player 2 piece i as num_pieces + i
+    private SpatialGrid grid;
+    // pieces of each side in its scoring area, kept up to date as pieces move
+    private int player1_score, player2_score;
+    // XOR of piece_hash over all pieces, kept up to date as pieces move
+    private long hash;
+    // positions closer than this hash the same
+    private static final double hash_resolution = 1e-6;
+
+    // consecutive rejected positions after which only the still open parts of the start
+    // area are sampled, and after which generation gives up altogether
+    private static final int sparse_attempts = 1000;
+    private static final int max_attempts = 1000000;
 
     public Board(Integer n, Integer seed)
     {
-        num_pieces = n; 
+        this(n, seed, BoardConfig.standard());
+    }
+
+    // A random board with the given geometry.
+    public Board(Integer n, Integer seed, BoardConfig config)
+    {
+        setup(n, config);
+        config.check_fits(n);
         r = new Random(seed);
-        x_max = 60.0;
-        x_min = -60.0;
-        y_max = 20.0;
-        y_min = -20.0;
-        init_offset_x = 20.0; 
-        diameter_piece = 2.0;
-        eps = 1E-7;
-        player1 = new HashMap<Integer, Point>();
-        player2 = new HashMap<Integer, Point>();
-        pieces_offsets = new HashSet<String>();
         generate_random_pieces();
     }
 
+    // A standard board with the pieces at the given positions, indexed by piece id.
+    public Board(double[] p1_xs, double[] p1_ys, double[] p2_xs, double[] p2_ys)
+    {
+        this(p1_xs, p1_ys, p2_xs, p2_ys, BoardConfig.standard());
+    }
+
+    public Board(double[] p1_xs, double[] p1_ys, double[] p2_xs, double[] p2_ys, BoardConfig config)
+    {
+        setup(p1_xs.length, config);
+        for (int i = 0; i < num_pieces; i++)
+        {
+            player1_xs[i] = p1_xs[i];
+            player1_ys[i] = p1_ys[i];
+            player2_xs[i] = p2_xs[i];
+            player2_ys[i] = p2_ys[i];
+            grid.add(i, p1_xs[i], p1_ys[i]);
+            grid.add(num_pieces + i, p2_xs[i], p2_ys[i]);
+            hash ^= piece_hash(i, p1_xs[i], p1_ys[i]) ^ piece_hash(num_pieces + i, p2_xs[i], p2_ys[i]);
+            if (config.in_endzone(p1_xs[i], true))
+                player1_score++;
+            if (config.in_endzone(p2_xs[i], false))
+                player2_score++;
+        }
+        placed = num_pieces;
+    }
+
+    private void setup(Integer n, BoardConfig config)
+    {
+        num_pieces = n; 
+        this.config = config;
+        player1_xs = new double[n];
+        player1_ys = new double[n];
+        player2_xs = new double[n];
+        player2_ys = new double[n];
+        grid = config.grid();
+    }
+
+    // Places player 1's pieces uniformly at random, one after the other, in the free part
+    // of the start area, and mirrors them for player 2.
+    //
+    // Positions are drawn over the whole start area until sparse_attempts in a row have
+    // been rejected. From then on the area is split into small cells and positions are only
+    // drawn from cells that are not yet covered by a single piece's exclusion disc. As the
+    // free area lies entirely within those cells, the positions are still uniform over it;
+    // boards that never get that crowded come out exactly as they always did for a seed.
     public void generate_random_pieces()
     {
-        
-        while(player1.size()!=num_pieces)
+        int rejected = 0;
+        while(placed != num_pieces && rejected < sparse_attempts)
         {
-            Double x = init_offset_x + (x_max - init_offset_x) * r.nextDouble();
-            Double y = y_min + (y_max - y_min) * r.nextDouble();
+            double x = config.snap(config.start_x + (config.x_max - config.start_x) * r.nextDouble());
+            double y = config.snap(config.y_min + (config.y_max - config.y_min) * r.nextDouble());
 
-            String s = x.toString() + ":" + y.toString();
-            if(pieces_offsets.contains(s) || check_collision(player1, new Pair<Integer, Point>(player1.size(),new Point(x, y))))
+            if(has_collision(x, y) || !config.in_start_area(x, y))
+            {
+                rejected++;
                 continue;
+            }
 
-            if(x - diameter_piece/2  + eps < init_offset_x || x + diameter_piece/2 - eps > x_max  || y - diameter_piece/2  + eps < y_min || y + diameter_piece/2 - eps > y_max)
+            place(x, y);
+            rejected = 0;
+        }
+        if (placed != num_pieces)
+            generate_sparse_pieces();
+    }
+
+    private void generate_sparse_pieces()
+    {
+        // cells over the positions a piece's centre can take
+        double diameter_piece = config.diameter_piece;
+        double x_max = config.x_max, y_max = config.y_max;
+        double left = config.start_x + diameter_piece/2, bottom = config.y_min + diameter_piece/2;
+        double cell = diameter_piece / 4;
+        int cols = (int) Math.ceil((x_max - diameter_piece/2 - left) / cell);
+        int rows = (int) Math.ceil((y_max - diameter_piece/2 - bottom) / cell);
+
+        // open cells, with each cell's position in the list or -1 once it is covered
+        int[] open = new int[cols * rows];
+        int[] position = new int[cols * rows];
+        int open_count = 0;
+        for (int c = 0; c < cols * rows; c++)
+        {
+            int col = c % cols, row = c / cols;
+            boolean covered = false;
+            for (int id = 0; id < placed && !covered; id++)
+                covered = covers(player1_xs[id], player1_ys[id], left + col * cell, bottom + row * cell, cell);
+            position[c] = covered ? -1 : open_count;
+            if (!covered)
+                open[open_count++] = c;
+        }
+
+        int rejected = 0;
+        while (placed != num_pieces)
+        {
+            if (open_count == 0 || rejected >= max_attempts)
+                throw new IllegalStateException("Unable to place " + num_pieces + " pieces in the start area, it is full after " + placed + ".");
+
+            int c = open[r.nextInt(open_count)];
+            double x = config.snap(left + (c % cols + r.nextDouble()) * cell);
+            double y = config.snap(bottom + (c / cols + r.nextDouble()) * cell);
+            // the last column and row of cells stick out of the start area unless it is a
+            // whole number of cells, and snapping can take a position out of it as well
+            if (has_collision(x, y) || !config.in_start_area(x, y))
+            {
+                rejected++;
                 continue;
+            }
 
-            pieces_offsets.add(s);
-            player1.put( (Integer) player1.size(), new Point(x, y));
-            player2.put( (Integer) player2.size(), new Point(-x, y));
+            place(x, y);
+            rejected = 0;
 
+            // close the cells the new piece covers
+            int col_min = Math.max(0, (int) Math.floor((x - diameter_piece - left) / cell));
+            int col_max = Math.min(cols - 1, (int) Math.floor((x + diameter_piece - left) / cell));
+            int row_min = Math.max(0, (int) Math.floor((y - diameter_piece - bottom) / cell));
+            int row_max = Math.min(rows - 1, (int) Math.floor((y + diameter_piece - bottom) / cell));
+            for (int row = row_min; row <= row_max; row++)
+                for (int col = col_min; col <= col_max; col++)
+                {
+                    int k = row * cols + col;
+                    if (position[k] < 0 || !covers(x, y, left + col * cell, bottom + row * cell, cell))
+                        continue;
+                    int last = open[--open_count];
+                    open[position[k]] = last;
+                    position[last] = position[k];
+                    position[k] = -1;
+                }
         }
+    }
+
+    // True if every point of the square cell at (x, y) is too close to a piece at (px, py),
+    // wherever it is snapped to.
+    private boolean covers(double px, double py, double x, double y, double cell)
+    {
+        double dx = Math.max(Math.abs(px - x), Math.abs(px - x - cell));
+        double dy = Math.max(Math.abs(py - y), Math.abs(py - y - cell));
+        double min_dist = config.lattice == 0 ? config.diameter_piece - config.eps : config.diameter_piece - 2.0 / config.lattice;
+        return dx * dx + dy * dy < min_dist * min_dist;
+    }
 
+    private void place(double x, double y)
+    {
+        player1_xs[placed] = x;
+        player1_ys[placed] = y;
+        player2_xs[placed] = -x;
+        player2_ys[placed] = y;
+        grid.add(placed, x, y);
+        grid.add(num_pieces + placed, -x, y);
+        hash ^= piece_hash(placed, x, y) ^ piece_hash(num_pieces + placed, -x, y);
+        if (config.in_endzone(x, true))
+            player1_score++;
+        if (config.in_endzone(-x, false))
+            player2_score++;
+        placed++;
     }
 
+    // Most pieces random placement can put in a side's start area, see BoardConfig.capacity.
+    public int capacity()
+    {
+        return config.capacity();
+    }
+
+    // The static helpers below use the geometry of the game the calling thread plays or
+    // calls a player for, see BoardConfig.current().
     public static boolean almostEqual(double a, double b)
     {
-        return Math.abs(a-b) < eps;
+        return BoardConfig.current().almost_equal(a, b);
     }
 
     public static double getdist(Point a, Point b)
     {
-        return Math.sqrt(Math.pow(Math.abs(a.x - b.x), 2.0) + Math.pow(Math.abs(a.y - b.y), 2.0));
+        return getdist(a.x, a.y, b.x, b.y);
+    }
+
+    public static double getdist(double ax, double ay, double bx, double by)
+    {
+        return Math.sqrt(Math.pow(Math.abs(ax - bx), 2.0) + Math.pow(Math.abs(ay - by), 2.0));
     }
         
     public static double get_diameter_piece()
     {
-        return diameter_piece;
+        return BoardConfig.current().diameter_piece;
     }
+    // True if the piece moved would overlap any piece in m. On a lattice the move is snapped
+    // and the test is done on whole lattice steps, as the simulator does it, which lets
+    // pieces come up to one step closer than a diameter; otherwise they may only come eps
+    // closer.
     public static boolean check_collision(HashMap<Integer, Point> m, Pair<Integer, Point> move)
     {
+        BoardConfig config = BoardConfig.current();
+        if (config.lattice > 0)
+        {
+            double x = config.snap(move.getValue().x), y = config.snap(move.getValue().y);
+            for (Point p : m.values())
+                if (config.overlaps(config.snap(p.x), config.snap(p.y), x, y))
+                    return true;
+            return false;
+        }
         for (HashMap.Entry<Integer, Point> entry : m.entrySet()) 
         {
-            if ( getdist(move.getValue(), entry.getValue()) + eps < diameter_piece)
+            if ( getdist(move.getValue(), entry.getValue()) + config.eps < config.diameter_piece)
             {
                 // Double dist = getdist(move.getValue(), entry.getValue()) + eps;
                 // Log.record("collision detected between pieces " + move.getKey().toString() + " and "+ entry.getKey().toString()+ "distance was "+ dist.toString());
@@ -105,10 +272,56 @@ public class Board
         return false;
     }
 
+    // True if a piece centred at (x, y), snapped to the lattice, would overlap any piece on
+    // the board. Same test as check_collision, but only the pieces in the neighbouring grid
+    // cells are looked at.
+    public boolean has_collision(double x, double y)
+    {
+        x = config.snap(x);
+        y = config.snap(y);
+        int col = grid.col(x), row = grid.row(y);
+        for (int c = col - 1; c <= col + 1; c++)
+            for (int r = row - 1; r <= row + 1; r++)
+            {
+                int index = grid.index(c, r);
+                if (index < 0)
+                    continue;
+                int[] ids = grid.ids(index);
+                for (int k = grid.count(index) - 1; k >= 0; k--)
+                {
+                    int id = ids[k];
+                    if (id < num_pieces ? config.overlaps(player1_xs[id], player1_ys[id], x, y)
+                                        : config.overlaps(player2_xs[id - num_pieces], player2_ys[id - num_pieces], x, y))
+                        return true;
+                }
+            }
+        return false;
+    }
+
     public static boolean check_within_bounds(Pair<Integer, Point> move)
     {
-        return !(move.getValue().x - diameter_piece/2  + eps < x_min || move.getValue().x + diameter_piece/2 - eps > x_max  || 
-                move.getValue().y - diameter_piece/2  + eps < y_min || move.getValue().y + diameter_piece/2 - eps > y_max);
+        return check_within_bounds(move.getValue().x, move.getValue().y);
+    }
+
+    public static boolean check_within_bounds(double x, double y)
+    {
+        return BoardConfig.current().within_bounds(x, y);
+    }
+
+    public static int get_lattice()
+    {
+        return BoardConfig.current().lattice;
+    }
+
+    // The nearest lattice position to v, or v itself without a lattice.
+    public static double snap(double v)
+    {
+        return BoardConfig.current().snap(v);
+    }
+
+    public BoardConfig get_config()
+    {
+        return config;
     }
 
     public boolean check_valid_move(Pair<Integer, Point> move, boolean isplayer1)
@@ -130,28 +343,23 @@ public class Board
                     return false;
                 }
             // check if move is adjacent to previous position.
-            if(isplayer1 && !almostEqual(getdist(player1.get(move.getKey()), move.getValue()), diameter_piece))
-                {
-                    Double dist = getdist(player1.get(move.getKey()), move.getValue());
-                    Log.record("new move not adjacent to previous position for player 1." + " dist was " + dist.toString());
-                    return false;
-                }
-            else if (!isplayer1 && !almostEqual(getdist(player2.get(move.getKey()), move.getValue()), diameter_piece))
+            int id = move.getKey();
+            double dist = isplayer1 ? getdist(player1_xs[id], player1_ys[id], move.getValue().x, move.getValue().y)
+                                    : getdist(player2_xs[id], player2_ys[id], move.getValue().x, move.getValue().y);
+            if(!config.almost_equal(dist, config.diameter_piece))
                 {
-                     Double dist = getdist(player2.get(move.getKey()), move.getValue());
-                    Log.record("new move not adjacent to previous position for player 2." + " dist was " + dist.toString());
+                    Log.record("new move not adjacent to previous position for player " + curr_player + "." + " dist was " + Double.toString(dist));
                     return false;
                 }
 
-            // check for collisions
-            valid = valid && !check_collision(player1, move);
-            valid = valid && !check_collision(player2, move);
+            // check for collisions, where the piece will end up
+            double x = config.snap(move.getValue().x), y = config.snap(move.getValue().y);
+            valid = !has_collision(x, y);
             if(!valid)
                 Log.record(" Collision detected in new move for player "+ curr_player);
 
             // check within bounds
-            if(move.getValue().x - diameter_piece/2  + eps < x_min || move.getValue().x + diameter_piece/2 - eps > x_max  || 
-                move.getValue().y - diameter_piece/2  + eps < y_min || move.getValue().y + diameter_piece/2 - eps > y_max)
+            if(!config.within_bounds(x, y))
                 {
                     valid = false;
                     Log.record(" piece is being placed out of bounds by player  "+ curr_player);
@@ -170,45 +378,105 @@ public class Board
 
     public void move_piece(Pair<Integer, Point> move, boolean isplayer1)
     {
-        if(isplayer1)
-            player1.put(move.getKey(), move.getValue());
-        else
-            player2.put(move.getKey(), move.getValue());
+        move_piece(move.getKey(), move.getValue().x, move.getValue().y, isplayer1);
     }
 
-    public Integer get_score(boolean isplayer1)
+    public void move_piece(int id, double x, double y, boolean isplayer1)
     {
-        double lim_min = 0.0, lim_max= 0.0;
-        HashMap<Integer, Point> m;
-        Integer score = 0;
+        x = config.snap(x);
+        y = config.snap(y);
         if(isplayer1)
         {
-            
-            lim_min = -60.0;
-            lim_max = -20.0;
-            m = player1;
+            grid.move(id, player1_xs[id], player1_ys[id], x, y);
+            hash ^= piece_hash(id, player1_xs[id], player1_ys[id]) ^ piece_hash(id, x, y);
+            if (config.in_endzone(player1_xs[id], true))
+                player1_score--;
+            if (config.in_endzone(x, true))
+                player1_score++;
+            player1_xs[id] = x;
+            player1_ys[id] = y;
         }
         else
         {
-            lim_min = 20.0;
-            lim_max = 60.0;
-            m = player2;
+            grid.move(num_pieces + id, player2_xs[id], player2_ys[id], x, y);
+            hash ^= piece_hash(num_pieces + id, player2_xs[id], player2_ys[id]) ^ piece_hash(num_pieces + id, x, y);
+            if (config.in_endzone(player2_xs[id], false))
+                player2_score--;
+            if (config.in_endzone(x, false))
+                player2_score++;
+            player2_xs[id] = x;
+            player2_ys[id] = y;
         }
+    }
 
-        for (HashMap.Entry<Integer, Point> entry : m.entrySet()) 
-        {
-            if(entry.getValue().x - diameter_piece/2 + eps >= lim_min  && entry.getValue().x + diameter_piece/2 - eps <= lim_max)
-                score++;
-        }
+    // Hash of the positions of all pieces, rounded to hash_resolution. Boards with the same
+    // pieces in the same places hash the same; different ones almost never do.
+    public long get_hash()
+    {
+        return hash;
+    }
 
-        return score;
+    // Zobrist-style key of one piece at one position: as positions are not taken from a
+    // fixed set, the key is computed by mixing the piece and its rounded coordinates.
+    private static long piece_hash(int id, double x, double y)
+    {
+        long h = mix(id + 0x9E3779B97F4A7C15L);
+        h = mix(h ^ Math.round(x / hash_resolution));
+        return mix(h ^ Math.round(y / hash_resolution));
+    }
 
+    // The finalizer of the SplitMix64 generator.
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Number of the player's pieces in its scoring area, counted as pieces move.
+    public Integer get_score(boolean isplayer1)
+    {
+        return isplayer1 ? player1_score : player2_score;
+    }
+
+    // True if a piece of the given player at x counts towards that player's score.
+    public static boolean in_endzone(double x, boolean isplayer1)
+    {
+        return BoardConfig.current().in_endzone(x, isplayer1);
+    }
+
+    // Read-only view of one side's pieces for code that still works with piece maps.
+    public Map<Integer, Point> get_pieces(boolean isplayer1)
+    {
+        if(isplayer1) return new PieceMapView(player1_xs, player1_ys);
+        else return new PieceMapView(player2_xs, player2_ys);
+    }
+
+    public Integer get_num_pieces()
+    {
+        return num_pieces;
+    }
+
+    public double get_x(boolean isplayer1, int id)
+    {
+        return isplayer1 ? player1_xs[id] : player2_xs[id];
+    }
+
+    public double get_y(boolean isplayer1, int id)
+    {
+        return isplayer1 ? player1_ys[id] : player2_ys[id];
     }
 
-    public HashMap<Integer, Point> get_pieces(boolean isplayer1)
+    // A private copy of one side's pieces, safe to hand to a player.
+    // Built from the packed positions, so nothing the player does to it can reach the board.
+    public HashMap<Integer, Point> snapshot(boolean isplayer1)
     {
-        if(isplayer1) return player1;
-        else return player2;
+        double[] xs = isplayer1 ? player1_xs : player2_xs;
+        double[] ys = isplayer1 ? player1_ys : player2_ys;
+        HashMap<Integer, Point> m = new HashMap<Integer, Point>((int) (num_pieces / 0.75f) + 1);
+        for (int i = 0; i < num_pieces; i++)
+            m.put(i, new Point(xs[i], ys[i]));
+        return m;
     }
     
     
@@ -0,0 +1,182 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// The geometry of a board: the arena, where the pieces start and where they score, the
+// size of the pieces, and the lattice positions are snapped to, if any.
+//
+// The standard board is 120 by 40 with pieces of diameter 2. Player 1 starts with x
+// between 20 and 60 and scores with x between -60 and -20; player 2 is mirrored. scaled
+// makes the arena and its zones bigger while the pieces stay the same, so that many more
+// pieces fit.
+//
+// Every game is played with a config of its own. The static helpers in Board that players
+// call (check_within_bounds, in_endzone, ...) use current(), the config of the game the
+// calling thread plays or calls a player for.
+public class BoardConfig
+{
+    public final double x_min, x_max, y_min, y_max;
+    // player 1 starts with start_x <= x <= x_max and scores with x_min <= x <= -endzone_x
+    public final double start_x, endzone_x;
+    public final double diameter_piece;
+    public final double eps;
+    // positions are multiples of 1/lattice, 0 for plain doubles
+    public final int lattice;
+    // pieces closer than this, in squared lattice steps, overlap
+    private final long lattice_min_sq;
+
+    // fraction of the area covered once random placement jams
+    private static final double jamming_coverage = 0.547;
+
+    private static final BoardConfig standard = new BoardConfig(-60, 60, -20, 20, 20, 20, 2, 1e-7, 0);
+    private static final InheritableThreadLocal<BoardConfig> current = new InheritableThreadLocal<BoardConfig>();
+
+    public BoardConfig(double x_min, double x_max, double y_min, double y_max, double start_x, double endzone_x, double diameter_piece, double eps, int lattice)
+    {
+        if (diameter_piece <= 0 || x_max - x_min < diameter_piece || y_max - y_min < diameter_piece)
+            throw new IllegalArgumentException("Arena must be at least one piece wide and high.");
+        if (x_max - start_x < diameter_piece || -endzone_x - x_min < diameter_piece)
+            throw new IllegalArgumentException("Start area and endzone must be at least one piece wide.");
+        if (lattice < 0)
+            throw new IllegalArgumentException("Lattice resolution must not be negative.");
+        this.x_min = x_min;
+        this.x_max = x_max;
+        this.y_min = y_min;
+        this.y_max = y_max;
+        this.start_x = start_x;
+        this.endzone_x = endzone_x;
+        this.diameter_piece = diameter_piece;
+        this.eps = eps;
+        this.lattice = lattice;
+        // pieces one lattice step closer than a diameter still do not overlap, so that a
+        // piece moved a diameter away and snapped never hits the spot it came from
+        long diameter_steps = Math.round(diameter_piece * lattice);
+        lattice_min_sq = (diameter_steps - 1) * (diameter_steps - 1);
+    }
+
+    public static BoardConfig standard()
+    {
+        return standard;
+    }
+
+    // The same board with the arena, start area and endzones factor times as large in both
+    // directions, and pieces of the same size.
+    public BoardConfig scaled(double factor)
+    {
+        if (!(factor > 0))
+            throw new IllegalArgumentException("Arena scale must be positive.");
+        return new BoardConfig(factor * x_min, factor * x_max, factor * y_min, factor * y_max, factor * start_x, factor * endzone_x, diameter_piece, eps, lattice);
+    }
+
+    // The same board with positions snapped to multiples of 1/lattice, 0 for none.
+    public BoardConfig with_lattice(int lattice)
+    {
+        return new BoardConfig(x_min, x_max, y_min, y_max, start_x, endzone_x, diameter_piece, eps, lattice);
+    }
+
+    // The config of the game this thread plays or calls a player for; the standard board
+    // outside of games.
+    public static BoardConfig current()
+    {
+        BoardConfig config = current.get();
+        return config == null ? standard : config;
+    }
+
+    static void use(BoardConfig config)
+    {
+        if (config == null)
+            current.remove();
+        else
+            current.set(config);
+    }
+
+    public boolean almost_equal(double a, double b)
+    {
+        return Math.abs(a - b) < eps;
+    }
+
+    // True if a piece centred at (x, y) lies within the arena.
+    public boolean within_bounds(double x, double y)
+    {
+        return !(x - diameter_piece/2 + eps < x_min || x + diameter_piece/2 - eps > x_max ||
+                y - diameter_piece/2 + eps < y_min || y + diameter_piece/2 - eps > y_max);
+    }
+
+    // True if a piece of player 1 centred at (x, y) lies within its start area.
+    public boolean in_start_area(double x, double y)
+    {
+        return !(x - diameter_piece/2 + eps < start_x || x + diameter_piece/2 - eps > x_max ||
+                y - diameter_piece/2 + eps < y_min || y + diameter_piece/2 - eps > y_max);
+    }
+
+    // True if a piece of the given player at x counts towards that player's score.
+    public boolean in_endzone(double x, boolean isplayer1)
+    {
+        double lim_min = isplayer1 ? x_min : endzone_x;
+        double lim_max = isplayer1 ? -endzone_x : x_max;
+        return x - diameter_piece/2 + eps >= lim_min && x + diameter_piece/2 - eps <= lim_max;
+    }
+
+    // The nearest lattice position to v, or v itself without a lattice.
+    public double snap(double v)
+    {
+        if (lattice == 0)
+            return v;
+        return Math.round(v * lattice) / (double) lattice;
+    }
+
+    // True if pieces at (ax, ay) and (bx, by) overlap. On a lattice both have to be snapped
+    // already; the test is then done on whole lattice steps, without rounding errors.
+    public boolean overlaps(double ax, double ay, double bx, double by)
+    {
+        if (lattice == 0)
+        {
+            double dx = ax - bx, dy = ay - by;
+            double min_dist = diameter_piece - eps;
+            return dx * dx + dy * dy < min_dist * min_dist;
+        }
+        long dx = Math.round(ax * lattice) - Math.round(bx * lattice);
+        long dy = Math.round(ay * lattice) - Math.round(by * lattice);
+        return dx * dx + dy * dy < lattice_min_sq;
+    }
+
+    // Most pieces random placement can put in a side's start area. Pieces placed one after
+    // the other at random positions jam once they cover about 54.7% of the area (random
+    // sequential adsorption of discs), far short of the 90.7% of the densest packing; near
+    // the walls they jam a little earlier still. On the standard board this gives 278,
+    // while boards jam at 263 to 277 pieces depending on the seed.
+    public int capacity()
+    {
+        double area = (x_max - start_x) * (y_max - y_min);
+        double disc = Math.PI * diameter_piece * diameter_piece / 4;
+        return (int) Math.floor(jamming_coverage * area / disc);
+    }
+
+    // Throws if n pieces are more than random placement can put in the start area.
+    public void check_fits(int n)
+    {
+        int capacity = capacity();
+        if (n > capacity)
+            throw new IllegalArgumentException("Cannot fit " + n + " pieces in the start area, random placement gets no further than about " + capacity + ".");
+    }
+
+    // An empty grid over the arena, with cells one diameter wide.
+    SpatialGrid grid()
+    {
+        return new SpatialGrid(x_min, x_max, y_min, y_max, diameter_piece);
+    }
+
+    @Override
+    public String toString()
+    {
+        return (x_max - x_min) + " x " + (y_max - y_min) + " arena, pieces of diameter " + diameter_piece + (lattice > 0 ? ", lattice 1/" + lattice : "");
+    }
+}
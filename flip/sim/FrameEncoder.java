@@ -0,0 +1,209 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Writes the GUI frames (JSON) straight into a reusable byte buffer.
+//
+// A keyframe lists every piece as a flat [x, y, x, y, ...] array ordered by id. The
+// frames in between only list the pieces that moved since the previous frame, as
+// [id, x, y, id, x, y, ...]. Coordinates are sent as fixed point with three decimals.
+// A keyframe is written for the first frame of every game and every keyframe_interval
+// frames, so that a browser that missed frames can pick up again from the latest one.
+// Keyframes also carry the board as [x_min, x_max, y_min, y_max, endzone_x, diameter].
+class FrameEncoder
+{
+    private static final int SCALE = 1000;
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[1 << 12];
+    private int length;
+
+    private int keyframe_interval;
+    private int since_keyframe;
+    private boolean keyframe;
+
+    // board and coordinates of the previous frame, in fixed point
+    private Board board;
+    private int[][] sent = new int[4][0];
+
+    public FrameEncoder(int keyframe_interval)
+    {
+        if (keyframe_interval < 1)
+            throw new IllegalArgumentException("Keyframe interval must be positive.");
+        this.keyframe_interval = keyframe_interval;
+    }
+
+    public void encode(double refresh, int round, int remaining_turns, String player1, String player2, int player1_score, int player2_score, Board board)
+    {
+        int n = board.get_num_pieces();
+        keyframe = board != this.board || sent[0].length != n || since_keyframe + 1 >= keyframe_interval;
+        if (keyframe)
+        {
+            this.board = board;
+            since_keyframe = 0;
+            for (int k = 0; k < 4; k++)
+                if (sent[k].length != n)
+                    sent[k] = new int[n];
+        }
+        else
+            since_keyframe++;
+
+        length = 0;
+        put("{\"refresh\":");
+        put_fixed(Math.round(refresh * SCALE));
+        put(",\"curr_round\":");
+        put_int(round);
+        put(",\"remaining_turns\":");
+        put_int(remaining_turns);
+        put(",\"player1\":");
+        put_string(player1);
+        put(",\"player2\":");
+        put_string(player2);
+        put(",\"player1_score\":");
+        put_int(player1_score);
+        put(",\"player2_score\":");
+        put_int(player2_score);
+        put(keyframe ? ",\"keyframe\":true" : ",\"keyframe\":false");
+        if (keyframe)
+            put_arena(board.get_config());
+        put(keyframe ? ",\"player1_pieces\":[" : ",\"player1_moves\":[");
+        put_pieces(true, 0);
+        put(keyframe ? "],\"player2_pieces\":[" : "],\"player2_moves\":[");
+        put_pieces(false, 2);
+        put("]}");
+    }
+
+    // Whether the last frame encoded is a keyframe.
+    public boolean keyframe()
+    {
+        return keyframe;
+    }
+
+    // A copy of the last frame encoded.
+    public byte[] bytes()
+    {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void put_arena(BoardConfig config)
+    {
+        double[] values = {config.x_min, config.x_max, config.y_min, config.y_max, config.endzone_x, config.diameter_piece};
+        put(",\"arena\":[");
+        for (int i = 0; i < values.length; i++)
+        {
+            if (i > 0)
+                put(',');
+            put_fixed(Math.round(values[i] * SCALE));
+        }
+        put(']');
+    }
+
+    private void put_pieces(boolean isplayer1, int k)
+    {
+        int[] xs = sent[k];
+        int[] ys = sent[k + 1];
+        boolean first = true;
+        for (int i = 0; i < xs.length; i++)
+        {
+            int x = (int) Math.round(board.get_x(isplayer1, i) * SCALE);
+            int y = (int) Math.round(board.get_y(isplayer1, i) * SCALE);
+            if (!keyframe && x == xs[i] && y == ys[i])
+                continue;
+            xs[i] = x;
+            ys[i] = y;
+            if (!first)
+                put(',');
+            first = false;
+            if (!keyframe)
+            {
+                put_int(i);
+                put(',');
+            }
+            put_fixed(x);
+            put(',');
+            put_fixed(y);
+        }
+    }
+
+    private void put(String ascii)
+    {
+        ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++)
+            buffer[length++] = (byte) ascii.charAt(i);
+    }
+
+    private void put(char c)
+    {
+        ensure(1);
+        buffer[length++] = (byte) c;
+    }
+
+    private void put_string(String str)
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        ensure(2 * bytes.length + 2);
+        buffer[length++] = '"';
+        for (byte b : bytes)
+        {
+            if (b == '"' || b == '\\')
+                buffer[length++] = '\\';
+            buffer[length++] = b;
+        }
+        buffer[length++] = '"';
+    }
+
+    private void put_int(long value)
+    {
+        ensure(20);
+        if (value < 0)
+        {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do
+        {
+            buffer[length++] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--)
+        {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void put_fixed(long value)
+    {
+        if (value < 0)
+        {
+            put('-');
+            value = -value;
+        }
+        put_int(value / SCALE);
+        ensure(4);
+        buffer[length++] = '.';
+        long fraction = value % SCALE;
+        buffer[length++] = DIGITS[(int) (fraction / 100)];
+        buffer[length++] = DIGITS[(int) (fraction / 10 % 10)];
+        buffer[length++] = DIGITS[(int) (fraction % 10)];
+    }
+
+    private void ensure(int bytes)
+    {
+        if (length + bytes > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + bytes));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// Ring of the most recent GUI frames. The simulator publishes without waiting for anyone;
+// readers ask for the frame after the last one they have seen. Frames in between
+// keyframes only hold what changed, so a reader that falls further behind than the ring
+// holds starts again from the newest keyframe.
+class FramePublisher
+{
+    public static class Frame
+    {
+        public final long seq;
+        public final byte[] content;
+        public final boolean keyframe;
+
+        Frame(long seq, byte[] content, boolean keyframe)
+        {
+            this.seq = seq;
+            this.content = content;
+            this.keyframe = keyframe;
+        }
+    }
+
+    private Frame[] ring;
+    private long next_seq = 1;
+    private long keyframe_seq = 0;
+    private Runnable listener;
+
+    public FramePublisher(int capacity)
+    {
+        ring = new Frame[capacity];
+    }
+
+    // Called after every publish, e.g. to wake up a server waiting for frames.
+    public synchronized void set_listener(Runnable listener)
+    {
+        this.listener = listener;
+    }
+
+    public void publish(byte[] content, boolean keyframe)
+    {
+        Runnable l;
+        synchronized (this)
+        {
+            long seq = next_seq++;
+            ring[(int) (seq % ring.length)] = new Frame(seq, content, keyframe);
+            if (keyframe)
+                keyframe_seq = seq;
+            l = listener;
+        }
+        if (l != null)
+            l.run();
+    }
+
+    // The frame following seq, the newest keyframe if that one is gone, or null if there is none yet.
+    public synchronized Frame after(long seq)
+    {
+        long latest = next_seq - 1;
+        if (seq == latest || latest == 0)
+            return null;
+        long oldest = Math.max(1, latest - ring.length + 1);
+        if (seq < latest && seq + 1 >= oldest)
+            return ring[(int) ((seq + 1) % ring.length)];
+        // too far behind, or ahead because the simulator was restarted
+        long wanted = keyframe_seq >= oldest ? keyframe_seq : latest;
+        return ring[(int) (wanted % ring.length)];
+    }
+
+    public synchronized long latest()
+    {
+        return next_seq - 1;
+    }
+}
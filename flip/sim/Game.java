@@ -0,0 +1,399 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Author: Vaibhav Darbari
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.io.IOException;
+
+import flip.sim.Point;
+import flip.sim.Board;
+import javafx.util.Pair;
+
+// A single game between two players. All the state of a game lives here so that
+// independent games can be played concurrently by the simulator.
+class Game
+{
+    private PlayerWrapper player1;
+    private PlayerWrapper player2;
+    private Integer n_pieces;
+    private Integer turns;
+    private Integer seed;
+
+    // state variables for gui
+
+    private HTTPServer server;
+    private double fps;
+
+    private Integer player1_score;
+    private Integer player2_score;
+
+    private Board board;
+
+    private Integer numTurns;
+    private Integer round;
+
+    // binary move journal, null when not recording
+    private String journal_path;
+    private int keyframe_interval;
+    private GameJournal journal;
+    private int turn;
+    private GameDetails details = new GameDetails();
+
+    // arena, zones, piece size and lattice of the board
+    private BoardConfig config = BoardConfig.standard();
+
+    // the game ends once this many turns in a row brought no position not seen before, 0 to never end early
+    private int stall_turns;
+    // last turn each position was seen in, by board hash
+    private Map<Long, Integer> positions;
+    private int repeated;
+
+    public Game(PlayerWrapper player1, PlayerWrapper player2, Integer n_pieces, Integer turns, Integer seed, Integer round, HTTPServer server, double fps)
+    {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.n_pieces = n_pieces;
+        this.turns = turns;
+        this.seed = seed;
+        this.round = round;
+        this.server = server;
+        this.fps = fps;
+    }
+
+    // Records every move of this game to a binary journal at path.
+    public void record_journal(String path, int keyframe_interval)
+    {
+        this.journal_path = path;
+        this.keyframe_interval = keyframe_interval;
+    }
+
+    // Plays the game on a board with the given geometry instead of the standard one.
+    public void use_config(BoardConfig config)
+    {
+        this.config = config;
+    }
+
+    // Ends the game once turns turns in a row only led to positions seen before.
+    public void detect_stalls(int turns)
+    {
+        this.stall_turns = turns;
+        this.positions = new HashMap<Long, Integer>();
+    }
+
+    // Plays the game to completion. Returns null if the players could not be initialized.
+    public GameResult play()
+    {
+        // while the game runs, the static helpers in Board use its geometry on this thread
+        // and on the threads that call the players
+        BoardConfig previous = BoardConfig.current();
+        BoardConfig.use(config);
+        try
+        {
+            return play_game();
+        }
+        finally
+        {
+            BoardConfig.use(previous);
+        }
+    }
+
+    private GameResult play_game()
+    {
+        Log.log("player 1 is" + player1.getName());
+        Log.log("player 2 is" + player2.getName());
+
+
+        Board game;
+        try
+        {
+            game = new Board(n_pieces, seed+round, config);
+        }
+        catch (IllegalStateException ex)
+        {
+            // random placement can jam for some seeds and not others close to the capacity
+            Log.error("Unable to set up the board for round " + round + ". " + ex.getMessage());
+            return null;
+        }
+
+        Log.log("Board setup complete.");
+
+        if (journal_path != null)
+        {
+            try
+            {
+                journal = new GameJournal(journal_path, seed+round, n_pieces, turns, keyframe_interval, player1.getName(), player2.getName(), config);
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to open journal " + journal_path + ". " + ex.getMessage());
+            }
+        }
+
+        numTurns = new Integer(turns);
+        player1_score = 0;
+        player2_score = 0;
+        board = game;
+
+         if (server != null)
+         {
+            Simulator.gui(server, this);
+         }
+
+        try
+        {
+            player1.init(game.snapshot(true), n_pieces, turns, true, config);
+            player2.init(game.snapshot(false), n_pieces, turns, false, config);
+        }
+        catch(Exception ex)
+        {
+            Log.error("Unable to begin game, players failed to initialize. " + ex.getMessage());
+            return null;
+        }
+
+
+
+        Integer curr_score_player_1 = 0;
+        Integer curr_score_player_2 = 0;
+        PlayerWrapper winner;
+
+        for(int j=0;j<turns;j++)
+        {
+            numTurns--;
+            turn = j;
+            details.turns = j + 1;
+            if (journal != null)
+            {
+                try
+                {
+                    journal.turn(j, game);
+                }
+                catch (IOException ex)
+                {
+                    journal_failed(ex);
+                }
+            }
+            if(j == 0)
+            {
+                play_turn(game, 1, true);
+                player1_score = curr_score_player_1;
+
+                if (server != null)
+                 {
+                    Simulator.gui(server, this);
+                 }
+
+                play_turn(game, 2, false);
+                player2_score = curr_score_player_2;
+
+                if (server != null)
+                 {
+                    Simulator.gui(server, this);
+                 }
+            }
+            else
+            {
+                curr_score_player_1  = Math.max(play_turn(game, 2, true), curr_score_player_1);
+                player1_score = curr_score_player_1;
+
+                if(curr_score_player_1.equals(n_pieces))
+                {
+                    details.finish_turn = j + 1;
+                    winner = player1;
+                    break;
+                }
+
+                 if (server != null)
+                 {
+                    Simulator.gui(server, this);
+                 }
+
+                curr_score_player_2  = Math.max(play_turn(game, 2, false), curr_score_player_2);
+                player2_score = curr_score_player_2;
+
+                if(curr_score_player_2.equals(n_pieces))
+                {
+                    details.finish_turn = j + 1;
+                    winner = player2;
+                    break;
+                }
+
+                if (server != null)
+                 {
+                    Simulator.gui(server, this);
+                 }
+            }
+
+            if (stall_turns > 0 && stalled(game, j))
+            {
+                details.stalled = true;
+                Log.log("No new position for " + stall_turns + " turns, the game ends at turn " + (j + 1) + ".");
+                break;
+            }
+        }
+
+        if (journal != null)
+        {
+            try
+            {
+                journal.close();
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to write journal " + journal_path + ". " + ex.getMessage());
+            }
+            journal = null;
+        }
+
+        if (curr_score_player_1 > curr_score_player_2)
+            {
+                winner = player1;
+            }
+        else if (!curr_score_player_1.equals(curr_score_player_2))
+            {
+                winner = player2;
+            }
+        else
+            winner = null;
+
+        Log.log("--------------------------------------------------------------------------------------------------------------");
+        Log.log("Player 1: "+player1.getName()+" scored " + curr_score_player_1.toString() + " points at the end of this round");
+        Log.log("Player 2: "+player2.getName()+" scored " + curr_score_player_2.toString() + " points at the end of this round");
+
+        if(winner == null)
+        {
+            Log.log("This round of the game ended in a tie.");
+        }
+        else
+        {
+            Log.log(winner.getName() + " won the round.");
+        }
+
+        if (server != null)
+         {
+            Simulator.gui(server, this);
+         }
+
+        Log.log("--------------------------------------------------------------------------------------------------------------");
+
+        details.player1.timed_out = player1.timed_out();
+        details.player2.timed_out = player2.timed_out();
+        return new GameResult(player1.getName(), player2.getName(), curr_score_player_1, curr_score_player_2, details);
+    }
+
+    // Sends the current state of this game to the GUI.
+    public void show()
+    {
+        if (server != null)
+            Simulator.gui(server, this);
+    }
+
+    private Integer play_turn(Board game, Integer num_moves, boolean isplayer1 )
+    {
+        Integer score = 0;
+        List<Pair<Integer, Point>> moves;
+        GameDetails.Side side = details.side(isplayer1);
+
+        try
+        {
+            if(isplayer1)
+            {
+                moves = player1.getMoves(num_moves, game.snapshot(true), game.snapshot(false), true, game.get_score(true), game.get_score(false));
+            }
+            else
+            {
+                moves = player2.getMoves(num_moves, game.snapshot(false), game.snapshot(true), false, game.get_score(false), game.get_score(true));
+            }
+            side.think((isplayer1 ? player1 : player2).last_call_nanos());
+
+            if(moves.size()>num_moves)
+                    Log.record("More moves than requested returned. Only first "+ num_moves.toString()+ " were considered.");
+
+            Integer i=0;
+            for(Pair<Integer, Point> move : moves)
+                {
+                    i++;
+                    if(i>num_moves) break;
+
+                    boolean valid = game.check_valid_move(move, isplayer1);
+                    if (journal != null)
+                    {
+                        try
+                        {
+                            journal.move(turn, isplayer1, move, valid);
+                        }
+                        catch (IOException ex)
+                        {
+                            journal_failed(ex);
+                        }
+                    }
+
+                    if(valid)
+                        side.moves++;
+                    else
+                        side.invalid_moves++;
+
+                    if(valid)
+                    {
+                        if (Log.isVerbose())
+                            Log.record("Player " + (isplayer1? "1":"2") + " moved piece "+ move.getKey() + " to "+ move.getValue());
+                        game.move_piece(move, isplayer1);
+                    }
+                    else if (Log.isVerbose())
+                    {
+                        Log.record("Player "+ (isplayer1? "1":"2") +" could not move piece "+ move.getKey() + " to "+ move.getValue() + ". Invalid move.");
+                    }
+                }
+
+            score = game.get_score(isplayer1);
+
+        }
+        catch(Exception ex)
+        {
+            Log.record("Player " + (isplayer1? "1":"2") + "turn ended with an exception. "  + ex.getMessage());
+        }
+
+        return score;
+
+    }
+
+    // Records the position after turn j; true once the last stall_turns turns all ended in
+    // positions seen before, whether the board is frozen or going round in a cycle.
+    private boolean stalled(Board game, int j)
+    {
+        if (positions.put(game.get_hash(), j) != null)
+            repeated++;
+        else
+            repeated = 0;
+        return repeated >= stall_turns;
+    }
+
+    private void journal_failed(IOException ex)
+    {
+        Log.error("Unable to write journal " + journal_path + ", recording stopped. " + ex.getMessage());
+        try
+        {
+            journal.close();
+        }
+        catch (IOException e)
+        {
+        }
+        journal = null;
+    }
+
+    // Writes the state that is sent to the GUI.
+    void encode(FrameEncoder encoder)
+    {
+        encoder.encode(1000.0/fps, round, numTurns, player1.getName(), player2.getName(), player1_score, player2_score, board);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// What happened in a game besides the final scores, for the results export.
+class GameDetails
+{
+    // turns played, and the turn in which a player got all pieces home (0 if none did)
+    public int turns;
+    public int finish_turn;
+    // whether the game was ended early because the position stopped changing
+    public boolean stalled;
+    public final Side player1 = new Side();
+    public final Side player2 = new Side();
+
+    static class Side
+    {
+        public int moves;
+        public int invalid_moves;
+        public boolean timed_out;
+        // time the player took for getMoves in each of its turns, in microseconds
+        private int[] think_micros = new int[64];
+        private int think_turns;
+
+        public void think(long nanos)
+        {
+            if (think_turns == think_micros.length)
+                think_micros = Arrays.copyOf(think_micros, 2 * think_turns);
+            think_micros[think_turns++] = (int) Math.min(nanos / 1000, Integer.MAX_VALUE);
+        }
+
+        public int[] think_micros()
+        {
+            return Arrays.copyOf(think_micros, think_turns);
+        }
+
+        public long think_total_micros()
+        {
+            long total = 0;
+            for (int i = 0; i < think_turns; i++)
+                total += think_micros[i];
+            return total;
+        }
+
+        public int think_max_micros()
+        {
+            int max = 0;
+            for (int i = 0; i < think_turns; i++)
+                max = Math.max(max, think_micros[i]);
+            return max;
+        }
+
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeInt(moves);
+            out.writeInt(invalid_moves);
+            out.writeBoolean(timed_out);
+            out.writeInt(think_turns);
+            for (int i = 0; i < think_turns; i++)
+                out.writeInt(think_micros[i]);
+        }
+
+        void read(DataInputStream in) throws IOException
+        {
+            moves = in.readInt();
+            invalid_moves = in.readInt();
+            timed_out = in.readBoolean();
+            think_turns = in.readInt();
+            think_micros = new int[Math.max(think_turns, 1)];
+            for (int i = 0; i < think_turns; i++)
+                think_micros[i] = in.readInt();
+        }
+    }
+
+    public Side side(boolean isplayer1)
+    {
+        return isplayer1 ? player1 : player2;
+    }
+
+    void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(turns);
+        out.writeInt(finish_turn);
+        out.writeBoolean(stalled);
+        player1.write(out);
+        player2.write(out);
+    }
+
+    static GameDetails read(DataInputStream in) throws IOException
+    {
+        GameDetails details = new GameDetails();
+        details.turns = in.readInt();
+        details.finish_turn = in.readInt();
+        details.stalled = in.readBoolean();
+        details.player1.read(in);
+        details.player2.read(in);
+        return details;
+    }
+}
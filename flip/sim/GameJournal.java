@@ -0,0 +1,169 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.util.Pair;
+
+// Binary record of one game, read back by JournalReader.
+//
+// Layout (big endian):
+//   header   magic, version, seed, n, turns, keyframe interval,
+//            index offset, turns played, player names,
+//            board config (x_min, x_max, y_min, y_max, start_x, endzone_x, diameter,
+//            eps as doubles, lattice as int; since version 2)
+//   body     move records and keyframes in the order they happened
+//            move:     turn (int), player (byte), piece id (int), x, y (double), valid (byte)
+//            keyframe: x, y (double) of all of player 1's pieces, then player 2's
+//   index    keyframe count, then (turn, offset) for each keyframe
+//
+// A keyframe for turn t holds the board before any move of turn t.
+class GameJournal implements Closeable
+{
+    public static final int MAGIC = 0x464c504a; // "FLPJ"
+    public static final short VERSION = 2;
+    public static final int RECORD_SIZE = 4 + 1 + 4 + 8 + 8 + 1;
+    // position of the index offset and turns played fields, patched on close
+    static final int INDEX_OFFSET_POSITION = 4 + 2 + 8 + 4 + 4 + 4;
+
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private long position;
+    private int keyframe_interval;
+    private int turns_played;
+    private List<Integer> keyframe_turns = new ArrayList<Integer>();
+    private List<Long> keyframe_offsets = new ArrayList<Long>();
+
+    public GameJournal(String path, long seed, int n, int turns, int keyframe_interval, String player1, String player2, BoardConfig config) throws IOException
+    {
+        if (keyframe_interval < 1)
+            throw new IllegalArgumentException("Keyframe interval must be positive.");
+        this.keyframe_interval = keyframe_interval;
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        byte[] name1 = player1.getBytes(StandardCharsets.UTF_8);
+        byte[] name2 = player2.getBytes(StandardCharsets.UTF_8);
+        ensure(INDEX_OFFSET_POSITION + 8 + 4 + 4 + name1.length + name2.length + 8 * 8 + 4);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(seed);
+        buffer.putInt(n);
+        buffer.putInt(turns);
+        buffer.putInt(keyframe_interval);
+        buffer.putLong(-1);
+        buffer.putInt(0);
+        buffer.putShort((short) name1.length);
+        buffer.put(name1);
+        buffer.putShort((short) name2.length);
+        buffer.put(name2);
+        buffer.putDouble(config.x_min);
+        buffer.putDouble(config.x_max);
+        buffer.putDouble(config.y_min);
+        buffer.putDouble(config.y_max);
+        buffer.putDouble(config.start_x);
+        buffer.putDouble(config.endzone_x);
+        buffer.putDouble(config.diameter_piece);
+        buffer.putDouble(config.eps);
+        buffer.putInt(config.lattice);
+    }
+
+    // Called at the start of every turn; writes a keyframe every keyframe_interval turns.
+    public void turn(int turn, Board board) throws IOException
+    {
+        turns_played = turn + 1;
+        if (turn % keyframe_interval != 0)
+            return;
+
+        int n = board.get_num_pieces();
+        ensure(4 * 8 * n);
+        keyframe_turns.add(turn);
+        keyframe_offsets.add(position + buffer.position());
+        for (int i = 0; i < n; i++)
+        {
+            buffer.putDouble(board.get_x(true, i));
+            buffer.putDouble(board.get_y(true, i));
+        }
+        for (int i = 0; i < n; i++)
+        {
+            buffer.putDouble(board.get_x(false, i));
+            buffer.putDouble(board.get_y(false, i));
+        }
+    }
+
+    public void move(int turn, boolean isplayer1, Pair<Integer, Point> move, boolean valid) throws IOException
+    {
+        ensure(RECORD_SIZE);
+        Integer id = move == null ? null : move.getKey();
+        Point p = move == null ? null : move.getValue();
+        buffer.putInt(turn);
+        buffer.put((byte) (isplayer1 ? 1 : 2));
+        buffer.putInt(id == null ? -1 : id);
+        buffer.putDouble(p == null ? Double.NaN : p.x);
+        buffer.putDouble(p == null ? Double.NaN : p.y);
+        buffer.put((byte) (valid ? 1 : 0));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel == null)
+            return;
+        try
+        {
+            long index_offset = position + buffer.position();
+            ensure(4 + 12 * keyframe_turns.size());
+            buffer.putInt(keyframe_turns.size());
+            for (int i = 0; i < keyframe_turns.size(); i++)
+            {
+                buffer.putInt(keyframe_turns.get(i));
+                buffer.putLong(keyframe_offsets.get(i));
+            }
+            drain();
+
+            ByteBuffer patch = ByteBuffer.allocate(12);
+            patch.putLong(index_offset);
+            patch.putInt(turns_played);
+            patch.flip();
+            channel.write(patch, INDEX_OFFSET_POSITION);
+        }
+        finally
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException
+    {
+        if (buffer.remaining() >= bytes)
+            return;
+        drain();
+        if (buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocateDirect(bytes);
+    }
+
+    private void drain() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Author: Vaibhav Darbari
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// Outcome of a single game, as seen by the tournament.
+class GameResult
+{
+    public final String player1;
+    public final String player2;
+    public final Integer player1_score;
+    public final Integer player2_score;
+    // null for results that were not played in this run
+    public final GameDetails details;
+
+    public GameResult(String player1, String player2, Integer player1_score, Integer player2_score)
+    {
+        this(player1, player2, player1_score, player2_score, null);
+    }
+
+    public GameResult(String player1, String player2, Integer player1_score, Integer player2_score, GameDetails details)
+    {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.player1_score = player1_score;
+        this.player2_score = player2_score;
+        this.details = details;
+    }
+
+    // Name of the winning player, or null for a tie.
+    public String winner()
+    {
+        if (player1_score > player2_score)
+            return player1;
+        else if (!player1_score.equals(player2_score))
+            return player2;
+        return null;
+    }
+
+    public boolean player1_won()
+    {
+        return player1_score > player2_score;
+    }
+}
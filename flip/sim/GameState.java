@@ -0,0 +1,253 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javafx.util.Pair;
+
+// A position players can search from: try moves, look at the score, and take them back.
+//
+// Build one from the maps handed to getMoves. Moves are checked with the simulator's rules
+// (see Board.check_valid_move) against a grid of the pieces around the target, scores are
+// kept up to date as pieces move, and every move goes into an undo log, so play, get_score
+// and undo do not depend on the number of pieces. mark and undo(mark) take back a whole
+// sequence of moves; fork makes an independent copy for searching a line of play apart.
+// Pieces are expected to be numbered 0 to n - 1 on both sides, as the simulator numbers them.
+public class GameState
+{
+    private int num_pieces;
+    private BoardConfig config;
+    // player 1 piece i is stored as i, player 2 piece i as num_pieces + i
+    private double[] xs, ys;
+    private SpatialGrid grid;
+    private int player1_score, player2_score;
+
+    // piece and previous position of every move played, most recent last
+    private int[] log_ids = new int[16];
+    private double[] log_xs = new double[16], log_ys = new double[16];
+    private int log_size;
+
+    // A position on the board of the game being played, see BoardConfig.current().
+    public GameState(Map<Integer, Point> player_pieces, Map<Integer, Point> opponent_pieces, boolean isplayer1)
+    {
+        this(player_pieces, opponent_pieces, isplayer1, BoardConfig.current());
+    }
+
+    public GameState(Map<Integer, Point> player_pieces, Map<Integer, Point> opponent_pieces, boolean isplayer1, BoardConfig config)
+    {
+        num_pieces = player_pieces.size();
+        if (opponent_pieces.size() != num_pieces)
+            throw new IllegalArgumentException("Both players must have the same number of pieces");
+        setup(config);
+        add(isplayer1 ? player_pieces : opponent_pieces, 0);
+        add(isplayer1 ? opponent_pieces : player_pieces, num_pieces);
+    }
+
+    public GameState(Board board)
+    {
+        num_pieces = board.get_num_pieces();
+        setup(board.get_config());
+        for (int i = 0; i < num_pieces; i++)
+        {
+            place(i, board.get_x(true, i), board.get_y(true, i));
+            place(num_pieces + i, board.get_x(false, i), board.get_y(false, i));
+        }
+    }
+
+    private GameState(GameState other)
+    {
+        num_pieces = other.num_pieces;
+        config = other.config;
+        xs = other.xs.clone();
+        ys = other.ys.clone();
+        grid = new SpatialGrid(other.grid);
+        player1_score = other.player1_score;
+        player2_score = other.player2_score;
+    }
+
+    private void setup(BoardConfig config)
+    {
+        this.config = config;
+        xs = new double[2 * num_pieces];
+        ys = new double[2 * num_pieces];
+        grid = config.grid();
+    }
+
+    private void add(Map<Integer, Point> pieces, int offset)
+    {
+        for (int i = 0; i < num_pieces; i++)
+        {
+            Point point = pieces.get(i);
+            if (point == null)
+                throw new IllegalArgumentException("Missing piece " + i);
+            place(offset + i, point.x, point.y);
+        }
+    }
+
+    private void place(int id, double x, double y)
+    {
+        xs[id] = x;
+        ys[id] = y;
+        grid.add(id, x, y);
+        if (config.in_endzone(x, id < num_pieces))
+            count(id, 1);
+    }
+
+    private void count(int id, int delta)
+    {
+        if (id < num_pieces)
+            player1_score += delta;
+        else
+            player2_score += delta;
+    }
+
+    // An independent copy of the current position, with an empty undo log.
+    public GameState fork()
+    {
+        return new GameState(this);
+    }
+
+    public int get_num_pieces()
+    {
+        return num_pieces;
+    }
+
+    public double get_x(boolean isplayer1, int id)
+    {
+        return xs[isplayer1 ? id : num_pieces + id];
+    }
+
+    public double get_y(boolean isplayer1, int id)
+    {
+        return ys[isplayer1 ? id : num_pieces + id];
+    }
+
+    public int get_score(boolean isplayer1)
+    {
+        return isplayer1 ? player1_score : player2_score;
+    }
+
+    public boolean is_valid(Pair<Integer, Point> move, boolean isplayer1)
+    {
+        if (move == null || move.getKey() == null || move.getValue() == null)
+            return false;
+        return is_valid(move.getKey(), move.getValue().x, move.getValue().y, isplayer1);
+    }
+
+    // True if moving the player's piece id to (x, y) is a valid move in this position.
+    public boolean is_valid(int id, double x, double y, boolean isplayer1)
+    {
+        if (id < 0 || id >= num_pieces)
+            return false;
+        int index = isplayer1 ? id : num_pieces + id;
+        if (!config.almost_equal(Board.getdist(xs[index], ys[index], x, y), config.diameter_piece))
+            return false;
+        x = config.snap(x);
+        y = config.snap(y);
+        return config.within_bounds(x, y) && !has_collision(x, y);
+    }
+
+    // True if a piece centred at (x, y), snapped to the board's lattice, would overlap any
+    // piece on the board.
+    public boolean has_collision(double x, double y)
+    {
+        x = config.snap(x);
+        y = config.snap(y);
+        int col = grid.col(x), row = grid.row(y);
+        for (int c = col - 1; c <= col + 1; c++)
+            for (int r = row - 1; r <= row + 1; r++)
+            {
+                int index = grid.index(c, r);
+                if (index < 0)
+                    continue;
+                int[] ids = grid.ids(index);
+                for (int k = grid.count(index) - 1; k >= 0; k--)
+                {
+                    if (config.overlaps(xs[ids[k]], ys[ids[k]], x, y))
+                        return true;
+                }
+            }
+        return false;
+    }
+
+    public boolean play(Pair<Integer, Point> move, boolean isplayer1)
+    {
+        if (!is_valid(move, isplayer1))
+            return false;
+        move_piece(move.getKey(), move.getValue().x, move.getValue().y, isplayer1);
+        return true;
+    }
+
+    // Plays the move if it is valid, as the simulator would; returns whether it was.
+    public boolean play(int id, double x, double y, boolean isplayer1)
+    {
+        if (!is_valid(id, x, y, isplayer1))
+            return false;
+        move_piece(id, x, y, isplayer1);
+        return true;
+    }
+
+    // Moves the piece without checking the move; it can still be undone.
+    public void move_piece(int id, double x, double y, boolean isplayer1)
+    {
+        x = config.snap(x);
+        y = config.snap(y);
+        int index = isplayer1 ? id : num_pieces + id;
+        if (log_size == log_ids.length)
+        {
+            log_ids = Arrays.copyOf(log_ids, 2 * log_size);
+            log_xs = Arrays.copyOf(log_xs, 2 * log_size);
+            log_ys = Arrays.copyOf(log_ys, 2 * log_size);
+        }
+        log_ids[log_size] = index;
+        log_xs[log_size] = xs[index];
+        log_ys[log_size] = ys[index];
+        log_size++;
+        set(index, x, y);
+    }
+
+    private void set(int index, double x, double y)
+    {
+        boolean isplayer1 = index < num_pieces;
+        if (config.in_endzone(xs[index], isplayer1))
+            count(index, -1);
+        grid.move(index, xs[index], ys[index], x, y);
+        xs[index] = x;
+        ys[index] = y;
+        if (config.in_endzone(x, isplayer1))
+            count(index, 1);
+    }
+
+    // Number of moves played so far, to hand to undo(mark) later.
+    public int mark()
+    {
+        return log_size;
+    }
+
+    // Takes back the last move played; returns false if there is none.
+    public boolean undo()
+    {
+        if (log_size == 0)
+            return false;
+        log_size--;
+        set(log_ids[log_size], log_xs[log_size], log_ys[log_size]);
+        return true;
+    }
+
+    // Takes back every move played since mark() returned the given value.
+    public void undo(int mark)
+    {
+        while (log_size > mark)
+            undo();
+    }
+}
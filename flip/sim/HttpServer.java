@@ -7,146 +7,390 @@
 
     Author: Vaibhav Darbari
     Simulator Version: 1.0
-    
+
 */
 package flip.sim;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.*;
 import java.time.format.*;
 import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
+// Single threaded, selector based HTTP/1.1 server for the GUI.
+// Connections are kept alive and served concurrently on the server's own thread;
+// static files are read once and served from memory with ETag/Last-Modified validation.
+// "data.txt?after=<n>" returns the first frame published after frame n, waiting up to
+// a second for one; the frame number is sent in the X-Frame header.
 class HTTPServer {
 
-    private ServerSocket socket = null;
+    private static final int max_request = 8192;
+
+    // how long a data.txt request is held open when there is no new frame
+    private static final long max_wait = 1000;
+
+    private ServerSocketChannel socket = null;
+
+    private Selector selector;
+
+    private Thread thread;
+
+    private String statics_root;
+
+    // static files by path, only touched by the server thread
+    private Map<String, StaticFile> statics = new HashMap<String, StaticFile>();
+
+    // connections whose data.txt request is waiting for the next frame, oldest first
+    private List<SelectionKey> waiting = new ArrayList<SelectionKey>();
+
+    private FramePublisher frames;
+
+    private volatile boolean running = true;
 
-    private Socket connection = null;
+    private static class StaticFile {
+        ByteBuffer content;
+        String etag;
+        String last_modified;
+        long modified;
+    }
 
-    private byte[] buffer = new byte[8192];
+    private static class Connection {
+        ByteBuffer in = ByteBuffer.allocate(max_request);
+        ArrayDeque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+        boolean close = false;
+        boolean waiting = false;
+        long after;
+        long waiting_since;
+    }
 
-    public HTTPServer() throws IOException {
-        socket = new ServerSocket();
+    public HTTPServer(String statics_root, FramePublisher frames) throws IOException {
+        this.statics_root = statics_root;
+        this.frames = frames;
+        frames.set_listener(new Runnable() {
+            @Override
+            public void run() {
+                selector.wakeup();
+            }
+        });
+        socket = ServerSocketChannel.open();
         socket.bind(null);
-        if (!socket.isBound())
+        if (socket.socket().getLocalPort() < 0)
             throw new NotYetBoundException();
+        socket.configureBlocking(false);
+        selector = Selector.open();
+        socket.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "flip-http");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     public int port() {
-        return socket == null ? -1 : socket.getLocalPort();
+        return socket == null ? -1 : socket.socket().getLocalPort();
     }
-    
+
     public String addr() {
-    	return socket == null ? "NA" : socket.getLocalSocketAddress().toString();
+    	return socket == null ? "NA" : socket.socket().getLocalSocketAddress().toString();
     }
 
     public void close() throws IOException {
-        if (connection != null)
-            throw new ConnectionPendingException();
-        if (socket != null) {
-            socket.close();
-            socket = null;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public String request() throws IOException {
-        if (connection != null)
-            throw new ConnectionPendingException();
-        connection = socket.accept();
-        InputStream in = connection.getInputStream();
-        int ch, i = 0;
-        do {
-            try {
-                ch = in.read();
-            } catch (IOException e1) {
-                try {
-                    connection.close();
-                } catch (IOException e2) {
+    // Makes a frame available to the browser; never waits for it to be fetched.
+    public void publish(byte[] content, boolean keyframe) {
+        frames.publish(content, keyframe);
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select(max_wait / 4);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable())
+                            accept();
+                        else {
+                            if (key.isReadable())
+                                read(key);
+                            if (key.isValid() && key.isWritable())
+                                write(key);
+                        }
+                    } catch (IOException e) {
+                        Log.record("HTTP connection error " + e.getMessage());
+                        drop(key);
+                    }
                 }
-                connection = null;
-                throw e1;
+                answer_waiting();
             }
-            if (ch < 0 || i == buffer.length) {
+        } catch (IOException e) {
+            Log.record("HTTP server error " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys())
                 try {
-                    connection.close();
+                    key.channel().close();
                 } catch (IOException e) {
                 }
-                connection = null;
-                throw new UnknownServiceException("Incomplete HTTP request");
-            }
-            buffer[i++] = (byte) ch;
-        } while (i < 4 || buffer[i - 1] != '\n' || buffer[i - 2] != '\r'
-                || buffer[i - 3] != '\n' || buffer[i - 4] != '\r');
-        for (i = 0; buffer[i] != '\r'; ++i) ;
-        String line = new String(buffer, 0, i);
-        String[] parts = line.split(" ");
-        if (parts.length != 3 || !parts[0].equals("GET")
-                || !parts[1].startsWith("/")
-                || !parts[2].equals("HTTP/1.1")) {
             try {
-                connection.close();
+                selector.close();
             } catch (IOException e) {
             }
-            connection = null;
-            throw new UnknownServiceException("Invalid HTTP request: " + line);
+            socket = null;
         }
-        return parts[1].substring(1);
     }
 
-    public void reply(File file) throws IOException {
-        if (connection == null)
-            throw new NoConnectionPendingException();
-        FileInputStream in = new FileInputStream(file);
-        OutputStream out = connection.getOutputStream();
-        String date = ZonedDateTime.now(ZoneId.of("GMT")).format(
-                DateTimeFormatter.RFC_1123_DATE_TIME);
-        String header = "HTTP/1.1 200 OK\r\n";
-        long length = file.length();
-        header += "Content-Length: " + length + "\r\n";
-        header += "Cache-Control: no-cache, no-store\r\n";
-        header += "Date: " + date + "\r\n\r\n";
-        try {
-            out.write(header.getBytes());
-            int bytes;
-            while ((bytes = in.read(buffer)) >= 0) {
-                length -= bytes;
-                if (length < 0) break;
-                out.write(buffer, 0, bytes);
+    private void accept() throws IOException {
+        SocketChannel channel = socket.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(connection.in) < 0) {
+            drop(key);
+            return;
+        }
+        handle(key);
+    }
+
+    // Answers every complete request in the input buffer, in order.
+    private void handle(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer in = connection.in;
+        while (!connection.waiting && !connection.close) {
+            int end = header_end(in);
+            if (end < 0) {
+                if (!in.hasRemaining()) {
+                    respond(key, "431 Request Header Fields Too Large", null, null, true);
+                }
+                return;
             }
-            if (length != 0)
-                throw new IOException("File modified during send");
-        } finally {
-            try {
-                in.close();
-            } catch (IOException e) {
+            String request = new String(in.array(), 0, end, StandardCharsets.ISO_8859_1);
+            in.flip();
+            in.position(end + 4);
+            in.compact();
+
+            String[] lines = request.split("\r\n");
+            String[] parts = lines[0].split(" ");
+            Map<String, String> headers = new HashMap<String, String>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0)
+                    headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
             }
+            if (parts.length != 3 || !(parts[0].equals("GET") || parts[0].equals("HEAD")) || !parts[1].startsWith("/")
+                    || !(parts[2].equals("HTTP/1.1") || parts[2].equals("HTTP/1.0"))) {
+                Log.record("Invalid HTTP request: " + lines[0]);
+                respond(key, "400 Bad Request", null, null, true);
+                return;
+            }
+            if (parts[2].equals("HTTP/1.0") || "close".equalsIgnoreCase(headers.get("connection")))
+                connection.close = true;
+
+            String path = parts[1].substring(1);
+            String query = "";
+            if (path.indexOf('?') >= 0) {
+                query = path.substring(path.indexOf('?') + 1);
+                path = path.substring(0, path.indexOf('?'));
+            }
+
+            if (path.equals("data.txt") && parts[0].equals("HEAD")) {
+                respond(key, "200 OK", null, null, false);
+                continue;
+            }
+            if (path.equals("data.txt")) {
+                connection.after = 0;
+                if (query.startsWith("after=")) {
+                    try {
+                        connection.after = Long.parseLong(query.substring(6));
+                    } catch (NumberFormatException e) {
+                    }
+                }
+                connection.waiting = true;
+                connection.waiting_since = System.currentTimeMillis();
+                waiting.add(key);
+                answer_waiting();
+                return;
+            }
+            serve_static(key, path, headers, parts[0].equals("HEAD"));
+        }
+    }
+
+    private static int header_end(ByteBuffer in) {
+        byte[] b = in.array();
+        for (int i = 3; i < in.position(); i++)
+            if (b[i] == '\n' && b[i - 1] == '\r' && b[i - 2] == '\n' && b[i - 3] == '\r')
+                return i - 3;
+        return -1;
+    }
+
+    // Sends new frames to the waiting data.txt requests, and 204 to those that waited too long.
+    private void answer_waiting() throws IOException {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : new ArrayList<SelectionKey>(waiting)) {
+            Connection connection = (Connection) key.attachment();
+            FramePublisher.Frame frame = frames.after(connection.after);
+            if (frame == null && now - connection.waiting_since < max_wait)
+                continue;
+            waiting.remove(key);
+            connection.waiting = false;
+            List<String> headers = new ArrayList<String>();
+            headers.add("Cache-Control: no-cache, no-store");
+            if (frame == null) {
+                respond(key, "204 No Content", headers, null, connection.close);
+            } else {
+                headers.add("X-Frame: " + frame.seq);
+                respond(key, "200 OK", headers, ByteBuffer.wrap(frame.content), connection.close);
+            }
+            if (key.isValid())
+                handle(key);
+        }
+    }
+
+    private void serve_static(SelectionKey key, String path, Map<String, String> request, boolean head) throws IOException {
+        if (path.equals("")) path = "webpage.html";
+        else if (!Character.isLetter(path.charAt(0)) || path.contains("..")) {
+            Log.record("Potentially malicious HTTP request \"" + path + "\"");
+            respond(key, "400 Bad Request", null, null, true);
+            return;
+        }
+
+        StaticFile file = statics.get(path);
+        if (file == null) {
+            file = load(path);
+            if (file == null) {
+                Log.record("Unknown HTTP request \"" + path + "\"");
+                respond(key, "404 Not Found", null, null, false);
+                return;
+            }
+            statics.put(path, file);
+        }
+
+        List<String> headers = new ArrayList<String>();
+        headers.add("ETag: " + file.etag);
+        headers.add("Last-Modified: " + file.last_modified);
+        headers.add("Cache-Control: no-cache");
+
+        String if_none_match = request.get("if-none-match");
+        String if_modified_since = request.get("if-modified-since");
+        boolean fresh = false;
+        if (if_none_match != null)
+            fresh = if_none_match.equals(file.etag) || if_none_match.equals("*");
+        else if (if_modified_since != null) {
             try {
-                connection.close();
-            } catch (IOException e) {
+                fresh = ZonedDateTime.parse(if_modified_since, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() >= file.modified / 1000;
+            } catch (DateTimeParseException e) {
             }
-            connection = null;
         }
+
+        if (head)
+            respond(key, "200 OK", headers, null, false, file.content.remaining());
+        else if (fresh)
+            respond(key, "304 Not Modified", headers, null, false);
+        else
+            respond(key, "200 OK", headers, file.content.duplicate(), false);
+    }
+
+    private StaticFile load(String path) {
+        File f = new File(statics_root + File.separator + path);
+        if (!f.isFile())
+            return null;
+        try {
+            byte[] bytes = Files.readAllBytes(f.toPath());
+            StaticFile file = new StaticFile();
+            file.content = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            file.modified = f.lastModified();
+            file.last_modified = ZonedDateTime.ofInstant(Instant.ofEpochMilli(file.modified), ZoneId.of("GMT")).format(
+                    DateTimeFormatter.RFC_1123_DATE_TIME);
+            StringBuilder etag = new StringBuilder("\"");
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes))
+                etag.append(String.format("%02x", b));
+            file.etag = etag.append('"').toString();
+            return file;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.record("HTTP static reply error " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void respond(SelectionKey key, String status, List<String> headers, ByteBuffer body, boolean close) throws IOException {
+        respond(key, status, headers, body, close, body == null ? 0 : body.remaining());
     }
 
-    public void reply(String content) throws IOException {
-        if (connection == null)
-            throw new NoConnectionPendingException();
-        OutputStream out = connection.getOutputStream();
+    private void respond(SelectionKey key, String status, List<String> headers, ByteBuffer body, boolean close, int length) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (close)
+            connection.close = true;
         String date = ZonedDateTime.now(ZoneId.of("GMT")).format(
                 DateTimeFormatter.RFC_1123_DATE_TIME);
-        String header = "HTTP/1.1 200 OK\r\n";
-        header += "Content-Length: " + content.length() + "\r\n";
-        header += "Cache-Control: no-cache, no-store\r\n";
-        header += "Date: " + date + "\r\n\r\n";
-        try {
-            out.write(header.getBytes());
-            out.write(content.getBytes());
-        } finally {
-            try {
-                connection.close();
-            } catch (IOException e) {
+        StringBuilder header = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        header.append("Content-Length: ").append(length).append("\r\n");
+        if (headers != null)
+            for (String h : headers)
+                header.append(h).append("\r\n");
+        header.append("Connection: ").append(connection.close ? "close" : "keep-alive").append("\r\n");
+        header.append("Date: ").append(date).append("\r\n\r\n");
+        connection.out.add(ByteBuffer.wrap(header.toString().getBytes(StandardCharsets.ISO_8859_1)));
+        if (body != null)
+            connection.out.add(body);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        while (!connection.out.isEmpty()) {
+            ByteBuffer buffer = connection.out.peek();
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
             }
-            connection = null;
+            connection.out.poll();
+        }
+        if (connection.close && !connection.waiting) {
+            drop(key);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void drop(SelectionKey key) {
+        waiting.remove(key);
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,176 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads a journal written by GameJournal. The board at any turn is rebuilt from the
+// closest earlier keyframe, so only the moves since that keyframe are replayed.
+//
+// Usage: java flip.sim.JournalReader <journal> [turn]
+public class JournalReader implements Closeable
+{
+    private FileChannel channel;
+    private long seed;
+    private int n;
+    private int turns;
+    private int keyframe_interval;
+    private int turns_played;
+    private long index_offset;
+    private String player1, player2;
+    private BoardConfig config;
+    private int[] keyframe_turns;
+    private long[] keyframe_offsets;
+
+    public JournalReader(String path) throws IOException
+    {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try
+        {
+            ByteBuffer header = read(0, (int) Math.min(channel.size(), 1 << 16));
+            if (header.getInt() != GameJournal.MAGIC)
+                throw new IOException("Not a game journal: " + path);
+            short version = header.getShort();
+            if (version < 1 || version > GameJournal.VERSION)
+                throw new IOException("Unsupported journal version " + version);
+            seed = header.getLong();
+            n = header.getInt();
+            turns = header.getInt();
+            keyframe_interval = header.getInt();
+            index_offset = header.getLong();
+            turns_played = header.getInt();
+            player1 = string(header);
+            player2 = string(header);
+            // journals before version 2 were all played on the standard board
+            if (version >= 2)
+                config = new BoardConfig(header.getDouble(), header.getDouble(), header.getDouble(), header.getDouble(),
+                        header.getDouble(), header.getDouble(), header.getDouble(), header.getDouble(), header.getInt());
+            else
+                config = BoardConfig.standard();
+            if (index_offset < 0)
+                throw new IOException("Journal was not closed: " + path);
+
+            ByteBuffer index = read(index_offset, (int) (channel.size() - index_offset));
+            int count = index.getInt();
+            keyframe_turns = new int[count];
+            keyframe_offsets = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                keyframe_turns[i] = index.getInt();
+                keyframe_offsets[i] = index.getLong();
+            }
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public long get_seed() { return seed; }
+    public int get_num_pieces() { return n; }
+    public int get_turns() { return turns; }
+    public int get_turns_played() { return turns_played; }
+    public String get_player1() { return player1; }
+    public String get_player2() { return player2; }
+    public BoardConfig get_config() { return config; }
+
+    // The board after the first `turn` turns have been played, 0 <= turn <= get_turns_played().
+    public Board board_at(int turn) throws IOException
+    {
+        if (turn < 0 || turn > turns_played)
+            throw new IllegalArgumentException("Turn " + turn + " is outside 0.." + turns_played);
+        if (keyframe_turns.length == 0)
+            throw new IOException("Journal has no keyframes");
+
+        int k = 0;
+        while (k + 1 < keyframe_turns.length && keyframe_turns[k + 1] <= turn)
+            k++;
+        long start = keyframe_offsets[k];
+        long limit = k + 1 < keyframe_offsets.length ? keyframe_offsets[k + 1] : index_offset;
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, start, limit - start);
+
+        double[][] xy = new double[4][n];
+        for (int side = 0; side < 4; side += 2)
+            for (int i = 0; i < n; i++)
+            {
+                xy[side][i] = data.getDouble();
+                xy[side + 1][i] = data.getDouble();
+            }
+        Board board = new Board(xy[0], xy[1], xy[2], xy[3], config);
+
+        while (data.remaining() >= GameJournal.RECORD_SIZE)
+        {
+            int move_turn = data.getInt();
+            boolean isplayer1 = data.get() == 1;
+            int id = data.getInt();
+            double x = data.getDouble();
+            double y = data.getDouble();
+            boolean valid = data.get() == 1;
+            if (move_turn >= turn)
+                break;
+            if (valid)
+                board.move_piece(id, x, y, isplayer1);
+        }
+        return board;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                break;
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String string(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: java flip.sim.JournalReader <journal> [turn]");
+            System.exit(1);
+        }
+        try (JournalReader reader = new JournalReader(args[0]))
+        {
+            int turn = args.length > 1 ? Integer.parseInt(args[1]) : reader.get_turns_played();
+            System.out.println("Player 1: " + reader.get_player1() + "\tPlayer 2: " + reader.get_player2());
+            System.out.println("Seed: " + reader.get_seed() + "\tPieces: " + reader.get_num_pieces() + "\tTurns played: " + reader.get_turns_played() + " of " + reader.get_turns());
+            System.out.println("Board: " + reader.get_config());
+
+            Board board = reader.board_at(turn);
+            System.out.println("After turn " + turn + ": player 1 scored " + board.get_score(true) + ", player 2 scored " + board.get_score(false));
+            for (int i = 0; i < reader.get_num_pieces(); i++)
+                System.out.println(i + "\t" + new Point(board.get_x(true, i), board.get_y(true, i)) + "\t" + new Point(board.get_x(false, i), board.get_y(false, i)));
+        }
+    }
+}
@@ -7,72 +7,292 @@
 
 	Author: Vaibhav Darbari
 	Simulator Version: 1.0
-	
+
 */
 package flip.sim;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+// Lines are timestamped by the caller and handed to a background thread, which formats
+// them and writes them out in batches. Callers only block when the buffer is full.
 public class Log {
-	private static FileWriter fileWriter;
+	public enum Level { ERROR, INFO, DEBUG }
+
+	private static final int capacity = 16384;
+	private static final int batch = 1024;
+
+	private static Writer fileWriter;
 	private static boolean active = false;
-	private static boolean v = false;
-	
+	private static boolean console = true;
+	private static Level level = Level.INFO;
+
+	private static final BlockingQueue<Line> queue = new ArrayBlockingQueue<Line>(capacity);
+	private static final Line end_marker = new Line(0, null);
+	private static Thread writer;
+	private static boolean ended = false;
+	private static final Object lock = new Object();
+	private static final Object write_lock = new Object();
+
+	// the timestamp prefix is only reformatted when the second changes
+	private static final DateFormat dateFormat = new SimpleDateFormat("[yyyy/MM/dd HH:mm:ss.");
+	private static long formatted_second = Long.MIN_VALUE;
+	private static String formatted_prefix;
+
+	// lines of the games being played on worker threads, written out later in tournament order
+	private static final InheritableThreadLocal<List<Line>> captured = new InheritableThreadLocal<List<Line>>();
+
+	static class Line {
+		final long time;
+		final String text;
+		// errors go to standard error rather than standard output
+		final boolean error;
+
+		Line(long time, String text) {
+			this(time, text, false);
+		}
+
+		Line(long time, String text, boolean error) {
+			this.time = time;
+			this.text = text;
+			this.error = error;
+		}
+	}
+
 	public static void activate() {
 		active = true;
 	}
 
 	public static void verbose() {
-		v = true;
+		level = Level.DEBUG;
 	}
-	
+
+	public static void setLevel(Level l) {
+		level = l;
+	}
+
+	public static boolean isActive() {
+		return active;
+	}
+
+	public static Level getLevel() {
+		return level;
+	}
+
+	public static boolean isVerbose() {
+		return level == Level.DEBUG;
+	}
+
+	// Stops echoing log lines to the console; the log file is still written.
+	public static void quiet() {
+		console = false;
+	}
+
 	public static void setLogFile(String filename) {
 		try {
-			fileWriter = new FileWriter(filename, true);
+			fileWriter = new BufferedWriter(new FileWriter(filename, true), 1 << 16);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
 	public static void log(String str) {
-		if (!active) return;
+		if (!active || level.compareTo(Level.INFO) < 0) return;
 		dump(str);
 	}
 
-	
+
 	public static void record(String str) {
-		if (!v) return;
+		if (level != Level.DEBUG) return;
 		dump(str);
-		
+
+	}
+
+	// Failures; always written to standard error, and to the log file at every level as
+	// long as logging is enabled.
+	public static void error(String str) {
+		dump(new Line(System.currentTimeMillis(), str, true));
+	}
+
+	// Holds back the lines logged by this thread (and threads it starts) until release.
+	static void capture() {
+		captured.set(Collections.synchronizedList(new ArrayList<Line>()));
+	}
+
+	// Lines held back for this thread, or null; passed on to pool threads working for it.
+	static List<Line> capturing() {
+		return captured.get();
+	}
+
+	static void capture(List<Line> lines) {
+		if (lines == null)
+			captured.remove();
+		else
+			captured.set(lines);
+	}
+
+	static List<Line> release() {
+		List<Line> lines = captured.get();
+		captured.remove();
+		return lines;
+	}
+
+	// Writes out lines previously held back by capture; only the errors unless logging is
+	// enabled.
+	static void flush(List<Line> lines) {
+		if (lines == null) return;
+		synchronized (lines) {
+			for (Line line : lines)
+				if (active || line.error)
+					enqueue(line);
+		}
 	}
 
 	private static void dump(String str)
 	{
-		DateFormat dateFormat = new SimpleDateFormat("[yyyy/MM/dd HH:mm:ss.SSS] ");
-		Date date = new Date();
-		str = dateFormat.format(date) + str + "\n";
-		// System.err.print(str);
-		System.out.println(str);
-		if (fileWriter == null) return;
+		dump(new Line(System.currentTimeMillis(), str));
+	}
+
+	private static void dump(Line line)
+	{
+		List<Line> lines = captured.get();
+		if (lines != null) {
+			lines.add(line);
+			return;
+		}
+		enqueue(line);
+	}
+
+	private static void enqueue(Line line)
+	{
+		synchronized (lock) {
+			if (ended) {
+				// nothing is draining the queue any more
+				write(Collections.singletonList(line));
+				return;
+			}
+			if (writer == null)
+				start();
+		}
 		try {
-			fileWriter.append(str);
-		} catch (IOException e) {
-			e.printStackTrace();
+			queue.put(line);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
-	public static void end()
+	private static void start()
 	{
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				List<Line> lines = new ArrayList<Line>(batch);
+				for (;;) {
+					try {
+						lines.add(queue.take());
+					} catch (InterruptedException e) {
+						continue;
+					}
+					queue.drainTo(lines, batch - 1);
+					boolean end = lines.remove(end_marker);
+					write(lines);
+					lines.clear();
+					if (end) return;
+				}
+			}
+		}, "flip-log");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				end();
+			}
+		}));
+	}
+
+	private static void write(List<Line> lines)
+	{
+		if (lines.isEmpty()) return;
+		synchronized (write_lock) {
+			write_batch(lines);
+		}
+	}
+
+	private static void write_batch(List<Line> lines)
+	{
+		StringBuilder file = new StringBuilder();
+		StringBuilder out = console ? new StringBuilder() : null;
+		StringBuilder err = new StringBuilder();
+		for (Line line : lines) {
+			String str = timestamp(line.time) + line.text + "\n";
+			file.append(str);
+			if (line.error)
+				err.append(str);
+			else if (console)
+				out.append(str).append('\n');
+		}
+		if (console)
+			System.out.print(out);
+		if (err.length() > 0)
+			System.err.print(err);
 		if (fileWriter == null) return;
 		try {
-			fileWriter.close();
+			fileWriter.append(file);
+			fileWriter.flush();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		fileWriter = null;
 	}
-}
\ No newline at end of file
+
+	private static String timestamp(long time)
+	{
+		long second = Math.floorDiv(time, 1000);
+		if (second != formatted_second) {
+			formatted_second = second;
+			formatted_prefix = dateFormat.format(new Date(second * 1000));
+		}
+		int millis = Math.floorMod(time, 1000);
+		return formatted_prefix + (millis < 100 ? (millis < 10 ? "00" : "0") : "") + millis + "] ";
+	}
+
+	// Writes out everything logged so far and closes the log file.
+	public static void end()
+	{
+		Thread w;
+		synchronized (lock) {
+			if (ended) return;
+			ended = true;
+			w = writer;
+		}
+		if (w != null) {
+			try {
+				queue.put(end_marker);
+				w.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		write(new ArrayList<Line>(queue));
+		queue.clear();
+		synchronized (write_lock) {
+			if (fileWriter == null) return;
+			try {
+				fileWriter.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			fileWriter = null;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javafx.util.Pair;
+
+// Checks candidate moves of a player the way the simulator will, without going over
+// every piece on the board for each candidate.
+//
+// Build one from the maps handed to getMoves; the pieces are indexed in a grid once, and
+// after that every check only looks at the pieces around the candidate. A move is valid
+// if it is one diameter away from the piece's current position, does not overlap any
+// piece of either player, and stays within the arena, exactly as in Board.check_valid_move.
+// Pieces are expected to be numbered 0 to n - 1, as the simulator numbers them.
+public class MoveValidator
+{
+    private int num_pieces;
+    private BoardConfig config;
+    // own piece i is stored as i in the grid, opponent piece i as num_pieces + i
+    private double[] xs, ys;
+    private SpatialGrid grid;
+
+    // Checks moves on the board of the game being played, see BoardConfig.current().
+    public MoveValidator(Map<Integer, Point> player_pieces, Map<Integer, Point> opponent_pieces)
+    {
+        this(player_pieces, opponent_pieces, BoardConfig.current());
+    }
+
+    public MoveValidator(Map<Integer, Point> player_pieces, Map<Integer, Point> opponent_pieces, BoardConfig config)
+    {
+        num_pieces = Math.max(size(player_pieces), size(opponent_pieces));
+        this.config = config;
+        xs = new double[2 * num_pieces];
+        ys = new double[2 * num_pieces];
+        Arrays.fill(xs, Double.NaN);
+        Arrays.fill(ys, Double.NaN);
+        grid = config.grid();
+        add(player_pieces, 0);
+        add(opponent_pieces, num_pieces);
+    }
+
+    private static int size(Map<Integer, Point> pieces)
+    {
+        int size = 0;
+        for (Integer id : pieces.keySet())
+        {
+            if (id < 0)
+                throw new IllegalArgumentException("Invalid piece id " + id);
+            size = Math.max(size, id + 1);
+        }
+        return size;
+    }
+
+    private void add(Map<Integer, Point> pieces, int offset)
+    {
+        for (Map.Entry<Integer, Point> entry : pieces.entrySet())
+        {
+            int id = offset + entry.getKey();
+            Point point = entry.getValue();
+            xs[id] = point.x;
+            ys[id] = point.y;
+            grid.add(id, point.x, point.y);
+        }
+    }
+
+    public boolean is_valid(Pair<Integer, Point> move)
+    {
+        if (move == null || move.getKey() == null || move.getValue() == null)
+            return false;
+        return is_valid(move.getKey(), move.getValue().x, move.getValue().y);
+    }
+
+    // True if moving own piece id to (x, y) is a valid move.
+    public boolean is_valid(int id, double x, double y)
+    {
+        if (id < 0 || id >= num_pieces || !present(id))
+            return false;
+        if (!config.almost_equal(Board.getdist(xs[id], ys[id], x, y), config.diameter_piece))
+            return false;
+        x = config.snap(x);
+        y = config.snap(y);
+        return config.within_bounds(x, y) && !has_collision(x, y);
+    }
+
+    // Checks a batch of candidates against the same position; valid[i] tells whether
+    // moves.get(i) is a valid move on its own.
+    public boolean[] validate(List<Pair<Integer, Point>> moves)
+    {
+        boolean[] valid = new boolean[moves.size()];
+        for (int i = 0; i < valid.length; i++)
+            valid[i] = is_valid(moves.get(i));
+        return valid;
+    }
+
+    // Checks the candidate positions (to_xs[i], to_ys[i]) for own piece id, writing the
+    // results into valid, and returns how many of them are valid.
+    public int validate(int id, double[] to_xs, double[] to_ys, boolean[] valid)
+    {
+        int count = 0;
+        for (int i = 0; i < to_xs.length; i++)
+        {
+            valid[i] = is_valid(id, to_xs[i], to_ys[i]);
+            if (valid[i])
+                count++;
+        }
+        return count;
+    }
+
+    // True if a piece centred at (x, y), snapped to the board's lattice, would overlap any
+    // piece of either player.
+    public boolean has_collision(double x, double y)
+    {
+        x = config.snap(x);
+        y = config.snap(y);
+        int col = grid.col(x), row = grid.row(y);
+        for (int c = col - 1; c <= col + 1; c++)
+            for (int r = row - 1; r <= row + 1; r++)
+            {
+                int index = grid.index(c, r);
+                if (index < 0)
+                    continue;
+                int[] ids = grid.ids(index);
+                for (int k = grid.count(index) - 1; k >= 0; k--)
+                {
+                    if (config.overlaps(xs[ids[k]], ys[ids[k]], x, y))
+                        return true;
+                }
+            }
+        return false;
+    }
+
+    // Moves own piece id to (x, y), so that the next moves of the same turn are checked
+    // against the position the simulator will see by then.
+    public void apply(Pair<Integer, Point> move)
+    {
+        int id = move.getKey();
+        double x = config.snap(move.getValue().x), y = config.snap(move.getValue().y);
+        grid.move(id, xs[id], ys[id], x, y);
+        xs[id] = x;
+        ys[id] = y;
+    }
+
+    // Pieces missing from the maps are left at NaN.
+    private boolean present(int id)
+    {
+        return !Double.isNaN(xs[id]);
+    }
+}
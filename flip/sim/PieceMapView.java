@@ -0,0 +1,91 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Read-only Map<Integer, Point> over the packed piece arrays of a Board.
+// Points are created on access and reflect the board at that moment; changing them has no effect.
+class PieceMapView extends AbstractMap<Integer, Point>
+{
+    private double[] xs;
+    private double[] ys;
+
+    public PieceMapView(double[] xs, double[] ys)
+    {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    @Override
+    public int size()
+    {
+        return xs.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return key instanceof Integer && (Integer) key >= 0 && (Integer) key < xs.length;
+    }
+
+    @Override
+    public Point get(Object key)
+    {
+        if (!containsKey(key))
+            return null;
+        int id = (Integer) key;
+        return new Point(xs[id], ys[id]);
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, Point>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<Integer, Point>>()
+        {
+            @Override
+            public int size()
+            {
+                return xs.length;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Integer, Point>> iterator()
+            {
+                return new Iterator<Map.Entry<Integer, Point>>()
+                {
+                    private int id = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return id < xs.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Point> next()
+                    {
+                        if (id >= xs.length)
+                            throw new NoSuchElementException();
+                        Map.Entry<Integer, Point> entry = new AbstractMap.SimpleImmutableEntry<Integer, Point>(id, new Point(xs[id], ys[id]));
+                        id++;
+                        return entry;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -25,6 +25,19 @@ public interface Player {
     // t: Total turns available.
     public void init(HashMap<Integer, Point> pieces, int n, double t, boolean isplayer1, double diameter_piece);
 
+    // Called by the simulator instead of the init above, with the geometry of the board:
+    // arena, start area, endzones and piece size. Players that do not assume the standard
+    // board can override it; by default it only passes on the diameter.
+    public default void init(HashMap<Integer, Point> pieces, int n, double t, boolean isplayer1, BoardConfig config)
+    {
+        init(pieces, n, t, isplayer1, config.diameter_piece);
+    }
+
     // Gets the moves from the player. Number of moves is specified by first parameter.
     public List<Pair<Integer, Point>> getMoves(Integer num_moves, HashMap<Integer, Point> player_pieces, HashMap<Integer, Point> opponent_pieces, boolean isplayer1);
+
+    // Called right before each getMoves with the number of pieces each player has in its
+    // scoring area, as kept by the board. Players that need these counts can override it
+    // instead of recounting the pieces; Board.in_endzone is the test used.
+    public default void updateScores(int player_score, int opponent_score) {}
 }
\ No newline at end of file
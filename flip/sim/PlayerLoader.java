@@ -0,0 +1,307 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+// Compiles players into a cache directory and loads them from there.
+//
+// The compiled classes of a player live in <cache>/<hash>, where hash is the SHA-256 of
+// the player's sources and of the simulator's own sources, so a player is only compiled
+// again when something it is built from changes. Within one simulator run the loaded
+// class is kept, and every game gets a fresh instance of it.
+class PlayerLoader
+{
+    private String root;
+    private File cache;
+    private Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+    private Map<String, String> hashes = new HashMap<String, String>();
+    private byte[] sim_hash;
+
+    public PlayerLoader(String root, File cache)
+    {
+        this.root = root;
+        this.cache = cache;
+    }
+
+    // Compiles (or finds in the cache) all the given players, several at a time.
+    public void prepare(Collection<String> names, int threads) throws IOException
+    {
+        // hashing and logging happen here, in order, so that the log does not depend on
+        // which compilation finishes first
+        List<String> missing = new ArrayList<String>();
+        List<File> dirs = new ArrayList<File>();
+        for (String name : names)
+        {
+            synchronized (this)
+            {
+                if (classes.containsKey(name) || missing.contains(name))
+                    continue;
+            }
+            File dir = entry(name);
+            if (!cached(name, dir))
+                Log.log("Compiling for player " + name);
+            missing.add(name);
+            dirs.add(dir);
+        }
+        if (missing.isEmpty())
+            return;
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, missing.size())));
+        try
+        {
+            List<Future<Class<?>>> loaded = new ArrayList<Future<Class<?>>>();
+            for (int i = 0; i < missing.size(); i++)
+            {
+                String name = missing.get(i);
+                File dir = dirs.get(i);
+                loaded.add(pool.submit(() -> {
+                    if (!cached(name, dir))
+                        compile(name, dir);
+                    return define(name, dir);
+                }));
+            }
+            for (Future<Class<?>> future : loaded)
+                future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compiling players");
+        }
+        catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException(ex.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    public Player instance(String name) throws IOException, ReflectiveOperationException
+    {
+        Class<?> loaded;
+        synchronized (this)
+        {
+            loaded = classes.get(name);
+        }
+        if (loaded == null)
+        {
+            File dir = entry(name);
+            if (!cached(name, dir))
+            {
+                Log.log("Compiling for player " + name);
+                compile(name, dir);
+            }
+            loaded = define(name, dir);
+        }
+        return (Player) loaded.getDeclaredConstructor().newInstance();
+    }
+
+    // Content hash of the player's and the simulator's sources.
+    public String hash(String name) throws IOException
+    {
+        synchronized (this)
+        {
+            String hash = hashes.get(name);
+            if (hash != null)
+                return hash;
+        }
+        String hash = entry(name).getName();
+        synchronized (this)
+        {
+            hashes.put(name, hash);
+        }
+        return hash;
+    }
+
+    private Class<?> define(String name, File dir) throws IOException, ClassNotFoundException
+    {
+        ClassLoader loader = new PlayerClassLoader(root + "." + name + ".", dir.toURI().toURL(), PlayerLoader.class.getClassLoader());
+        Class<?> loaded = loader.loadClass(root + "." + name + ".Player");
+        synchronized (this)
+        {
+            Class<?> previous = classes.get(name);
+            if (previous != null)
+                return previous;
+            classes.put(name, loaded);
+            return loaded;
+        }
+    }
+
+    // The cache directory for the current sources of a player.
+    private File entry(String name) throws IOException
+    {
+        Set<File> player_files = Simulator.directory(root + File.separator + name, ".java");
+        if (player_files.isEmpty())
+            throw new FileNotFoundException("No sources for player " + name);
+        MessageDigest digest = sha256();
+        digest.update(sim_hash());
+        hash(digest, player_files);
+        return new File(cache, hex(digest.digest()));
+    }
+
+    private boolean cached(String name, File dir)
+    {
+        return new File(dir, root + File.separator + name + File.separator + "Player.class").exists();
+    }
+
+    private void compile(String name, File dir) throws IOException
+    {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IOException("Cannot find Java compiler");
+
+        // compile next to the cache entry and move it in place, so that simulators sharing
+        // the cache never see a half written entry
+        cache.mkdirs();
+        File tmp = Files.createTempDirectory(cache.toPath(), name + ".").toFile();
+        try
+        {
+            StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, null);
+            try
+            {
+                List<String> options = Arrays.asList("-d", tmp.getPath(), "-classpath", System.getProperty("java.class.path"));
+                if (!compiler.getTask(null, manager, null, options, null,
+                        manager.getJavaFileObjectsFromFiles(Simulator.directory(root + File.separator + name, ".java"))).call())
+                    throw new IOException("Compilation failed");
+            }
+            finally
+            {
+                manager.close();
+            }
+            if (!cached(name, tmp))
+                throw new FileNotFoundException("Missing class file");
+            try
+            {
+                Files.move(tmp.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException ex)
+            {
+                // someone else just put the same entry in place
+                if (!dir.exists())
+                    throw ex;
+            }
+        }
+        finally
+        {
+            delete(tmp);
+        }
+    }
+
+    private synchronized byte[] sim_hash() throws IOException
+    {
+        if (sim_hash == null)
+        {
+            MessageDigest digest = sha256();
+            hash(digest, Simulator.directory(root + File.separator + "sim", ".java"));
+            sim_hash = digest.digest();
+        }
+        return sim_hash;
+    }
+
+    private static void hash(MessageDigest digest, Set<File> files) throws IOException
+    {
+        List<File> sorted = new ArrayList<File>(files);
+        sorted.sort(null);
+        for (File file : sorted)
+        {
+            digest.update(file.getPath().replace(File.separatorChar, '/').getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(Files.readAllBytes(file.toPath()));
+            digest.update((byte) 0);
+        }
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(byte[] bytes)
+    {
+        StringBuilder str = new StringBuilder();
+        for (byte b : bytes)
+            str.append(String.format("%02x", b));
+        return str.toString();
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+
+    // Loads the player's own classes from the cache before asking the parent, so that
+    // class files left next to the sources by older builds are never picked up.
+    private static class PlayerClassLoader extends URLClassLoader
+    {
+        private String prefix;
+
+        PlayerClassLoader(String prefix, URL url, ClassLoader parent)
+        {
+            super(new URL[] {url}, parent);
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+        {
+            if (!name.startsWith(prefix))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name))
+            {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null)
+                    loaded = findClass(name);
+                if (resolve)
+                    resolveClass(loaded);
+                return loaded;
+            }
+        }
+    }
+}
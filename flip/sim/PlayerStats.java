@@ -0,0 +1,287 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Wall time, CPU time and allocation of every player call, collected over the whole
+// tournament. Each player (by name) has one set of histograms for init and one for
+// getMoves; calls that timed out are only counted, since they never report back.
+class PlayerStats
+{
+    public static final String INIT = "init";
+    public static final String MOVES = "getMoves";
+
+    private static final Map<String, PlayerStats> registry = new TreeMap<String, PlayerStats>();
+
+    private String player;
+    private String call;
+    private long timeouts;
+    private Histogram wall = new Histogram();
+    private Histogram cpu = new Histogram();
+    private Histogram allocated = new Histogram();
+
+    private PlayerStats(String player, String call)
+    {
+        this.player = player;
+        this.call = call;
+    }
+
+    public static PlayerStats get(String player, String call)
+    {
+        synchronized (registry)
+        {
+            String key = player + "\t" + call;
+            PlayerStats stats = registry.get(key);
+            if (stats == null)
+            {
+                stats = new PlayerStats(player, call);
+                registry.put(key, stats);
+            }
+            return stats;
+        }
+    }
+
+    // cpu_nanos and allocated_bytes are -1 where the JVM cannot measure them.
+    public synchronized void record(long wall_nanos, long cpu_nanos, long allocated_bytes)
+    {
+        wall.add(wall_nanos);
+        if (cpu_nanos >= 0)
+            cpu.add(cpu_nanos);
+        if (allocated_bytes >= 0)
+            allocated.add(allocated_bytes);
+    }
+
+    public synchronized void timeout()
+    {
+        timeouts++;
+    }
+
+    private static List<PlayerStats> all()
+    {
+        synchronized (registry)
+        {
+            return new ArrayList<PlayerStats>(registry.values());
+        }
+    }
+
+    // Logs a table with one line per player and call.
+    public static void summary()
+    {
+        Log.log("player name \t call \t\t calls \t timeouts \t wall ms p50/p99/max \t cpu ms p50/p99/max \t alloc KB p50/p99/max");
+        for (PlayerStats stats : all())
+        {
+            synchronized (stats)
+            {
+                Log.log(stats.player + "\t\t" + stats.call + "\t" + stats.wall.count() + "\t" + stats.timeouts
+                        + "\t\t" + stats.wall.summary(1e6) + "\t\t" + stats.cpu.summary(1e6) + "\t\t" + stats.allocated.summary(1024));
+            }
+        }
+    }
+
+    // Writes the same numbers as CSV, in nanoseconds and bytes.
+    public static void write(String path) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new FileWriter(path));
+        try
+        {
+            out.println("player,call,calls,timeouts,wall_p50_ns,wall_p99_ns,wall_max_ns,wall_total_ns,cpu_p50_ns,cpu_p99_ns,cpu_max_ns,cpu_total_ns,alloc_p50_bytes,alloc_p99_bytes,alloc_max_bytes,alloc_total_bytes");
+            for (PlayerStats stats : all())
+            {
+                synchronized (stats)
+                {
+                    out.println(stats.player + "," + stats.call + "," + stats.wall.count() + "," + stats.timeouts
+                            + "," + stats.wall.csv() + "," + stats.cpu.csv() + "," + stats.allocated.csv());
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    // Writes everything recorded so far and forgets it, so a worker process can hand its
+    // numbers to the coordinator after each job.
+    public static void send(DataOutputStream out) throws IOException
+    {
+        List<PlayerStats> sent;
+        synchronized (registry)
+        {
+            sent = new ArrayList<PlayerStats>(registry.values());
+            registry.clear();
+        }
+        out.writeInt(sent.size());
+        for (PlayerStats stats : sent)
+        {
+            synchronized (stats)
+            {
+                out.writeUTF(stats.player);
+                out.writeUTF(stats.call);
+                out.writeLong(stats.timeouts);
+                stats.wall.write(out);
+                stats.cpu.write(out);
+                stats.allocated.write(out);
+            }
+        }
+    }
+
+    // Adds numbers written by send to the ones recorded here.
+    public static void receive(DataInputStream in) throws IOException
+    {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++)
+        {
+            PlayerStats stats = get(in.readUTF(), in.readUTF());
+            long timeouts = in.readLong();
+            Histogram wall = Histogram.read(in);
+            Histogram cpu = Histogram.read(in);
+            Histogram allocated = Histogram.read(in);
+            synchronized (stats)
+            {
+                stats.timeouts += timeouts;
+                stats.wall.add(wall);
+                stats.cpu.add(cpu);
+                stats.allocated.add(allocated);
+            }
+        }
+    }
+
+    // Log-linear histogram of non-negative values: every power of two is split into
+    // 16 buckets, so percentiles are reported to within about 6%. max is exact.
+    static class Histogram
+    {
+        private static final int SUB_BUCKETS = 16;
+        private long[] counts = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long total;
+        private long max;
+
+        public void add(long value)
+        {
+            if (value < 0)
+                value = 0;
+            counts[bucket(value)]++;
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        public void add(Histogram other)
+        {
+            for (int b = 0; b < counts.length; b++)
+                counts[b] += other.counts[b];
+            count += other.count;
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        // Only the buckets in use are written.
+        void write(DataOutputStream out) throws IOException
+        {
+            out.writeLong(count);
+            out.writeLong(total);
+            out.writeLong(max);
+            int used = 0;
+            for (long c : counts)
+                if (c != 0)
+                    used++;
+            out.writeInt(used);
+            for (int b = 0; b < counts.length; b++)
+                if (counts[b] != 0)
+                {
+                    out.writeShort(b);
+                    out.writeLong(counts[b]);
+                }
+        }
+
+        static Histogram read(DataInputStream in) throws IOException
+        {
+            Histogram histogram = new Histogram();
+            histogram.count = in.readLong();
+            histogram.total = in.readLong();
+            histogram.max = in.readLong();
+            int used = in.readInt();
+            for (int i = 0; i < used; i++)
+            {
+                int b = in.readShort();
+                histogram.counts[b] = in.readLong();
+            }
+            return histogram;
+        }
+
+        public long count()
+        {
+            return count;
+        }
+
+        // Upper end of the bucket holding the given fraction of the values, capped at max.
+        public long percentile(double fraction)
+        {
+            if (count == 0)
+                return 0;
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++)
+            {
+                seen += counts[b];
+                if (seen >= rank)
+                    return Math.min(upper(b), max);
+            }
+            return max;
+        }
+
+        String summary(double unit)
+        {
+            if (count == 0)
+                return "-";
+            return format(percentile(0.5) / unit) + "/" + format(percentile(0.99) / unit) + "/" + format(max / unit);
+        }
+
+        String csv()
+        {
+            if (count == 0)
+                return ",,,";
+            return percentile(0.5) + "," + percentile(0.99) + "," + max + "," + total;
+        }
+
+        private static String format(double value)
+        {
+            return value >= 100 ? String.valueOf(Math.round(value)) : String.format("%.2f", value);
+        }
+
+        private static int bucket(long value)
+        {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - 4;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        private static long upper(int bucket)
+        {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+            return low + (1L << shift) - 1;
+        }
+    }
+}
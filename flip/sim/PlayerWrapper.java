@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
 import java.util.*;
 import javafx.util.Pair; 
 
@@ -27,6 +28,8 @@ public class PlayerWrapper {
     private Player player;
     private String name;
     private long timeout;
+    private boolean timed_out = false;
+    private long last_call_nanos;
 
     public PlayerWrapper(Player player, String name, long timeout) 
     {
@@ -40,27 +43,27 @@ public class PlayerWrapper {
     // pieces: Location of the pieces for the player.
     // n: Number of pieces available.
     // t: Total turns available.
-    public void init(HashMap<Integer, Point> pieces, int n, double t, boolean isplayer1, double diameter_piece) 
+    public void init(HashMap<Integer, Point> pieces, int n, double t, boolean isplayer1, BoardConfig config) 
     {
         Log.record("Initializing player " + this.name);
         // Initializing ID mapping array
          try {
-            if (!timer.isAlive()) timer.start();
-
             timer.call_start(new Callable<Void>() 
             {
                 @Override
                 public Void call() throws Exception 
                 {
-                    player.init(pieces, n, t, isplayer1, diameter_piece);
+                    player.init(pieces, n, t, isplayer1, config);
                     return null;
                 }
             });
 
             timer.call_wait(timeout);
+            record(PlayerStats.INIT);
         }
         catch (Exception ex) 
         {
+            record(PlayerStats.INIT, ex);
             Log.record("Player " + this.name + " has possibly timed out.");
             // throw ex;
         }       
@@ -70,26 +73,36 @@ public class PlayerWrapper {
     // Gets the moves from the player. Number of moves is specified by first parameter.
     public List<Pair<Integer, Point>> getMoves(Integer num_moves, HashMap<Integer, Point> player_pieces, HashMap<Integer, Point> opponent_pieces, boolean isplayer1) 
     {
-        Log.record("Getting moves for player " + this.name);
+        return getMoves(num_moves, player_pieces, opponent_pieces, isplayer1, -1, -1);
+    }
+
+    // Also passes the current scores to the player first, within the same time limit;
+    // negative scores are not passed on.
+    public List<Pair<Integer, Point>> getMoves(Integer num_moves, HashMap<Integer, Point> player_pieces, HashMap<Integer, Point> opponent_pieces, boolean isplayer1, int player_score, int opponent_score) 
+    {
+        if (Log.isVerbose())
+            Log.record("Getting moves for player " + this.name);
         List<Pair<Integer, Point>> moves = new ArrayList<Pair<Integer, Point>>();
 
         try 
         {
-            if (!timer.isAlive()) timer.start();
-
             timer.call_start(new Callable<List<Pair<Integer, Point>>>() 
             {
                 @Override
                 public List<Pair<Integer, Point>> call() throws Exception 
                 {
+                    if (player_score >= 0)
+                        player.updateScores(player_score, opponent_score);
                     return player.getMoves(num_moves, player_pieces, opponent_pieces, isplayer1);
                 }
             });
 
             moves = timer.call_wait(timeout);
+            record(PlayerStats.MOVES);
         }
         catch (Exception ex) 
         {
+            record(PlayerStats.MOVES, ex);
             Log.record("Player " + this.name + " has possibly timed out.");
             // throw ex;
         }       
@@ -97,6 +110,35 @@ public class PlayerWrapper {
         return moves;
     }
 
+    private void record(String call)
+    {
+        last_call_nanos = timer.getElapsedNanos();
+        PlayerStats.get(name, call).record(timer.getElapsedNanos(), timer.getCpuNanos(), timer.getAllocatedBytes());
+    }
+
+    // A call that timed out has not finished, so there is nothing to measure yet.
+    private void record(String call, Exception ex)
+    {
+        if (ex instanceof TimeoutException || ex instanceof InterruptedException)
+        {
+            timed_out = true;
+            last_call_nanos = timeout * 1000000;
+            PlayerStats.get(name, call).timeout();
+        }
+        else
+            record(call);
+    }
+
+    // Whether any call of this player ran out of time, which makes the game depend on timing.
+    public boolean timed_out() {
+        return timed_out;
+    }
+
+    // Wall time of the last call, or the time limit if it timed out.
+    public long last_call_nanos() {
+        return last_call_nanos;
+    }
+
     public String getName() {
         return name;
     }
@@ -38,8 +38,13 @@ public class Point implements Serializable {
     	return x == o.x && y == o.y;
     }
 
+    // Mixes every bit of both coordinates. 0.0 and -0.0 are equal, so both hash as 0.
     @Override
     public int hashCode() {
-    	return new Integer((int) (x * 10000 + y)).hashCode();
+    	return PointMap.hash(bits(x), bits(y));
+    }
+
+    private static long bits(double v) {
+    	return v == 0.0 ? 0L : Double.doubleToLongBits(v);
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// Map from positions to ints without boxing, in place of HashMap<Point, Integer>, such as
+// piece ids by target position; a PointMap whose values are whole numbers, which doubles
+// hold exactly. Positions are compared as in PointMap, and gone over the same way:
+//
+//     for (int slot = map.first(); slot >= 0; slot = map.next(slot))
+//         use(map.x(slot), map.y(slot), map.value(slot));
+public class PointIntMap
+{
+    private final PointMap map;
+
+    public PointIntMap()
+    {
+        map = new PointMap();
+    }
+
+    public PointIntMap(int expected)
+    {
+        map = new PointMap(expected);
+    }
+
+    public PointIntMap(int expected, double resolution)
+    {
+        map = new PointMap(expected, resolution);
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public boolean is_empty()
+    {
+        return map.is_empty();
+    }
+
+    public boolean contains(double x, double y)
+    {
+        return map.contains(x, y);
+    }
+
+    public boolean contains(Point p)
+    {
+        return map.contains(p);
+    }
+
+    // The value at (x, y), or missing if there is none.
+    public int get(double x, double y, int missing)
+    {
+        return (int) map.get(x, y, missing);
+    }
+
+    public int get(Point p, int missing)
+    {
+        return (int) map.get(p, missing);
+    }
+
+    // Sets the value at (x, y); returns false if there already was one, which is replaced.
+    public boolean put(double x, double y, int value)
+    {
+        return map.put(x, y, value);
+    }
+
+    public boolean put(Point p, int value)
+    {
+        return map.put(p, value);
+    }
+
+    public boolean remove(double x, double y)
+    {
+        return map.remove(x, y);
+    }
+
+    public boolean remove(Point p)
+    {
+        return map.remove(p);
+    }
+
+    // True if any entry has the given value; goes over the whole table.
+    public boolean contains_value(int value)
+    {
+        return map.contains_value(value);
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    public int first()
+    {
+        return map.first();
+    }
+
+    public int next(int slot)
+    {
+        return map.next(slot);
+    }
+
+    public double x(int slot)
+    {
+        return map.x(slot);
+    }
+
+    public double y(int slot)
+    {
+        return map.y(slot);
+    }
+
+    public int value(int slot)
+    {
+        return (int) map.value(slot);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.Arrays;
+
+// Map from positions to doubles for players' hot loops, in place of HashMap<Point, Double>:
+// open addressing with linear probing over arrays of primitives, so nothing is boxed.
+//
+// Positions are keyed on their coordinates rounded to a multiple of resolution (1e-6 by
+// default, as in Board.get_hash), so a point worked out two ways with a little rounding
+// error in between still finds its entry. get, put, contains and remove do not allocate;
+// the table doubles when it gets more than half full. The entries can be gone over,
+// without allocating either, by their slots:
+//
+//     for (int slot = map.first(); slot >= 0; slot = map.next(slot))
+//         use(map.x(slot), map.y(slot), map.value(slot));
+//
+// Slots change when entries are put or removed, so do not do either while going over them.
+public class PointMap
+{
+    private static final double default_resolution = 1e-6;
+
+    // 1 / resolution
+    private final double scale;
+    // slot i holds an entry if used[i]: its rounded coordinates, the coordinates it was
+    // first put with, and its value
+    private boolean[] used;
+    private long[] qxs, qys;
+    private double[] xs, ys;
+    private double[] values;
+    private int size;
+    private int mask;
+
+    public PointMap()
+    {
+        this(16);
+    }
+
+    public PointMap(int expected)
+    {
+        this(expected, default_resolution);
+    }
+
+    public PointMap(int expected, double resolution)
+    {
+        if (!(resolution > 0))
+            throw new IllegalArgumentException("Resolution must be positive.");
+        this.scale = 1 / resolution;
+        int capacity = 16;
+        while (capacity < 2 * expected)
+            capacity *= 2;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity)
+    {
+        used = new boolean[capacity];
+        qxs = new long[capacity];
+        qys = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        values = new double[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean is_empty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains(double x, double y)
+    {
+        return find(quantize(x), quantize(y)) >= 0;
+    }
+
+    public boolean contains(Point p)
+    {
+        return contains(p.x, p.y);
+    }
+
+    // The value at (x, y), or missing if there is none.
+    public double get(double x, double y, double missing)
+    {
+        int slot = find(quantize(x), quantize(y));
+        return slot >= 0 ? values[slot] : missing;
+    }
+
+    public double get(Point p, double missing)
+    {
+        return get(p.x, p.y, missing);
+    }
+
+    // Sets the value at (x, y); returns false if there already was one, which is replaced.
+    public boolean put(double x, double y, double value)
+    {
+        long qx = quantize(x), qy = quantize(y);
+        int slot = find(qx, qy);
+        if (slot >= 0)
+        {
+            values[slot] = value;
+            return false;
+        }
+        if (2 * (size + 1) > used.length)
+        {
+            grow();
+            slot = find(qx, qy);
+        }
+        slot = -slot - 1;
+        used[slot] = true;
+        qxs[slot] = qx;
+        qys[slot] = qy;
+        xs[slot] = x;
+        ys[slot] = y;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    public boolean put(Point p, double value)
+    {
+        return put(p.x, p.y, value);
+    }
+
+    // Removes the entry at (x, y); returns false if there was none.
+    public boolean remove(double x, double y)
+    {
+        int slot = find(quantize(x), quantize(y));
+        if (slot < 0)
+            return false;
+        // move later entries of the run back into the gap, so that no entry ends up
+        // behind an empty slot on its way from its home slot
+        int gap = slot;
+        for (int next = (gap + 1) & mask; used[next]; next = (next + 1) & mask)
+        {
+            int home = hash(qxs[next], qys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask))
+            {
+                move(next, gap);
+                gap = next;
+            }
+        }
+        used[gap] = false;
+        size--;
+        return true;
+    }
+
+    public boolean remove(Point p)
+    {
+        return remove(p.x, p.y);
+    }
+
+    // True if any entry has the given value; goes over the whole table.
+    public boolean contains_value(double value)
+    {
+        for (int slot = first(); slot >= 0; slot = next(slot))
+            if (values[slot] == value)
+                return true;
+        return false;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    // The first slot holding an entry, or -1 if there is none.
+    public int first()
+    {
+        return next(-1);
+    }
+
+    // The next slot after slot holding an entry, or -1 if there is none.
+    public int next(int slot)
+    {
+        for (int i = slot + 1; i < used.length; i++)
+            if (used[i])
+                return i;
+        return -1;
+    }
+
+    public double x(int slot)
+    {
+        return xs[slot];
+    }
+
+    public double y(int slot)
+    {
+        return ys[slot];
+    }
+
+    public double value(int slot)
+    {
+        return values[slot];
+    }
+
+    private long quantize(double v)
+    {
+        return Math.round(v * scale);
+    }
+
+    // Slot of the entry with the given rounded coordinates, or -(slot it would go in) - 1.
+    private int find(long qx, long qy)
+    {
+        int slot = hash(qx, qy) & mask;
+        while (used[slot])
+        {
+            if (qxs[slot] == qx && qys[slot] == qy)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    static int hash(long qx, long qy)
+    {
+        long h = qx * 0x9E3779B97F4A7C15L + qy;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void move(int from, int to)
+    {
+        qxs[to] = qxs[from];
+        qys[to] = qys[from];
+        xs[to] = xs[from];
+        ys[to] = ys[from];
+        values[to] = values[from];
+    }
+
+    private void grow()
+    {
+        boolean[] old_used = used;
+        long[] old_qxs = qxs, old_qys = qys;
+        double[] old_xs = xs, old_ys = ys, old_values = values;
+        allocate(2 * old_used.length);
+        for (int i = 0; i < old_used.length; i++)
+        {
+            if (!old_used[i])
+                continue;
+            int slot = -find(old_qxs[i], old_qys[i]) - 1;
+            used[slot] = true;
+            qxs[slot] = old_qxs[i];
+            qys[slot] = old_qys[i];
+            xs[slot] = old_xs[i];
+            ys[slot] = old_ys[i];
+            values[slot] = old_values[i];
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// Set of positions without boxing, in place of HashSet<Point>; a PointMap whose values are
+// not used. Positions are compared as in PointMap, and gone over the same way:
+//
+//     for (int slot = set.first(); slot >= 0; slot = set.next(slot))
+//         use(set.x(slot), set.y(slot));
+public class PointSet
+{
+    private final PointMap map;
+
+    public PointSet()
+    {
+        map = new PointMap();
+    }
+
+    public PointSet(int expected)
+    {
+        map = new PointMap(expected);
+    }
+
+    public PointSet(int expected, double resolution)
+    {
+        map = new PointMap(expected, resolution);
+    }
+
+    public int size()
+    {
+        return map.size();
+    }
+
+    public boolean is_empty()
+    {
+        return map.is_empty();
+    }
+
+    public boolean contains(double x, double y)
+    {
+        return map.contains(x, y);
+    }
+
+    public boolean contains(Point p)
+    {
+        return map.contains(p);
+    }
+
+    // Returns false if the position was already in the set.
+    public boolean add(double x, double y)
+    {
+        return map.put(x, y, 0);
+    }
+
+    public boolean add(Point p)
+    {
+        return map.put(p, 0);
+    }
+
+    public boolean remove(double x, double y)
+    {
+        return map.remove(x, y);
+    }
+
+    public boolean remove(Point p)
+    {
+        return map.remove(p);
+    }
+
+    public void clear()
+    {
+        map.clear();
+    }
+
+    public int first()
+    {
+        return map.first();
+    }
+
+    public int next(int slot)
+    {
+        return map.next(slot);
+    }
+
+    public double x(int slot)
+    {
+        return map.x(slot);
+    }
+
+    public double y(int slot)
+    {
+        return map.y(slot);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Scores of games played before, kept in an append-only file with one game per line:
+//   <key> TAB <player 1 score> TAB <player 2 score>
+// The whole file is indexed in memory when the cache is opened; a last line cut short
+// by a crash is ignored. The key describes everything the outcome of a game depends on (see
+// Simulator.play_game), so a hit can stand in for playing the game again.
+class ResultCache
+{
+    private File file;
+    private Writer out;
+    private Map<String, int[]> index = new HashMap<String, int[]>();
+    private int hits, stores;
+
+    // invalidate drops every result stored so far.
+    public ResultCache(String path, boolean invalidate) throws IOException
+    {
+        file = new File(path);
+        if (invalidate || !file.exists())
+        {
+            out = new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8);
+            return;
+        }
+
+        // a last line without its newline was cut short
+        boolean complete = ends_with_newline(file);
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try
+        {
+            String line = in.readLine();
+            while (line != null)
+            {
+                String next = in.readLine();
+                String[] parts = line.split("\t");
+                if ((next != null || complete) && parts.length == 3)
+                {
+                    try
+                    {
+                        index.put(parts[0], new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+                    }
+                    catch (NumberFormatException ex)
+                    {
+                    }
+                }
+                line = next;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+        if (!complete)
+            out.write("\n");
+    }
+
+    private static boolean ends_with_newline(File file) throws IOException
+    {
+        if (file.length() == 0)
+            return true;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            raf.seek(file.length() - 1);
+            return raf.read() == '\n';
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    // The stored result of a game with this key, as played by player1 and player2.
+    public synchronized GameResult get(String key, String player1, String player2)
+    {
+        int[] scores = index.get(key);
+        if (scores == null)
+            return null;
+        hits++;
+        return new GameResult(player1, player2, scores[0], scores[1]);
+    }
+
+    public synchronized void put(String key, GameResult result) throws IOException
+    {
+        index.put(key, new int[] {result.player1_score, result.player2_score});
+        out.write(key + "\t" + result.player1_score + "\t" + result.player2_score + "\n");
+        out.flush();
+        stores++;
+    }
+
+    // Counts hits and stores made through another handle on the same file.
+    public synchronized void count(int hits, int stores)
+    {
+        this.hits += hits;
+        this.stores += stores;
+    }
+
+    public synchronized int hits()
+    {
+        return hits;
+    }
+
+    public synchronized int stores()
+    {
+        return stores;
+    }
+
+    public synchronized void close() throws IOException
+    {
+        out.close();
+    }
+}
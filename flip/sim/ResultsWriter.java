@@ -0,0 +1,145 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Writes one row per game to a CSV file, or one JSON object per line if the file name
+// ends in .jsonl, while the tournament runs. Rows are flushed every batch games, so a
+// file being written can be read up to the last batch.
+//
+// Games taken from the result cache only have their scores; the other columns are left
+// empty (null in JSON). Think times are the wall time of getMoves in microseconds; the
+// JSON rows also list them turn by turn.
+class ResultsWriter
+{
+    private static final int batch = 64;
+    private static final String[] columns = {"round", "seed", "player1", "player2", "player1_score", "player2_score", "winner", "cached",
+            "turns", "finish_turn", "stalled",
+            "player1_moves", "player1_invalid_moves", "player1_timed_out", "player1_think_total_us", "player1_think_max_us",
+            "player2_moves", "player2_invalid_moves", "player2_timed_out", "player2_think_total_us", "player2_think_max_us"};
+
+    private Writer out;
+    private boolean json;
+    private int pending;
+
+    public ResultsWriter(String path) throws IOException
+    {
+        json = path.endsWith(".jsonl");
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8), 1 << 16);
+        if (!json)
+        {
+            out.write(String.join(",", columns));
+            out.write("\n");
+        }
+    }
+
+    public void write(int round, int seed, GameResult result) throws IOException
+    {
+        GameDetails details = result.details;
+        Object[] values = {round, seed, result.player1, result.player2, result.player1_score, result.player2_score, result.winner(), details == null,
+                null, null, null, null, null, null, null, null, null, null, null, null, null};
+        if (details != null)
+        {
+            values[8] = details.turns;
+            values[9] = details.finish_turn == 0 ? null : details.finish_turn;
+            values[10] = details.stalled;
+            side(values, 11, details.player1);
+            side(values, 16, details.player2);
+        }
+
+        StringBuilder row = new StringBuilder();
+        if (json)
+        {
+            row.append('{');
+            for (int i = 0; i < columns.length; i++)
+                row.append(i == 0 ? "" : ",").append('"').append(columns[i]).append("\":").append(json(values[i]));
+            if (details != null)
+            {
+                think(row, "player1_think_us", details.player1);
+                think(row, "player2_think_us", details.player2);
+            }
+            row.append('}');
+        }
+        else
+        {
+            for (int i = 0; i < columns.length; i++)
+                row.append(i == 0 ? "" : ",").append(csv(values[i]));
+        }
+        row.append('\n');
+        out.write(row.toString());
+        if (++pending == batch)
+            flush();
+    }
+
+    private static void side(Object[] values, int at, GameDetails.Side side)
+    {
+        values[at] = side.moves;
+        values[at + 1] = side.invalid_moves;
+        values[at + 2] = side.timed_out;
+        values[at + 3] = side.think_total_micros();
+        values[at + 4] = side.think_max_micros();
+    }
+
+    private static void think(StringBuilder row, String name, GameDetails.Side side)
+    {
+        row.append(",\"").append(name).append("\":[");
+        int[] micros = side.think_micros();
+        for (int i = 0; i < micros.length; i++)
+            row.append(i == 0 ? "" : ",").append(micros[i]);
+        row.append(']');
+    }
+
+    private static String csv(Object value)
+    {
+        if (value == null)
+            return "";
+        String str = value.toString();
+        if (str.indexOf(',') < 0 && str.indexOf('"') < 0 && str.indexOf('\n') < 0)
+            return str;
+        return '"' + str.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(Object value)
+    {
+        if (value == null)
+            return "null";
+        if (!(value instanceof String))
+            return value.toString();
+        StringBuilder str = new StringBuilder("\"");
+        for (char c : ((String) value).toCharArray())
+        {
+            if (c == '"' || c == '\\')
+                str.append('\\').append(c);
+            else if (c < 0x20)
+                str.append(String.format("\\u%04x", (int) c));
+            else
+                str.append(c);
+        }
+        return str.append('"').toString();
+    }
+
+    public void flush() throws IOException
+    {
+        out.flush();
+        pending = 0;
+    }
+
+    public void close() throws IOException
+    {
+        out.close();
+    }
+}
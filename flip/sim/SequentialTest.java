@@ -0,0 +1,72 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+// Sequential probability ratio test deciding which of two players is stronger.
+//
+// p is the chance that the first player wins a game that is not a tie. The test weighs
+// p = 1/2 + delta against p = 1/2 - delta and stops once the log likelihood ratio
+// leaves (ln(beta / (1 - alpha)), ln((1 - beta) / alpha)). Ties carry no information.
+// With the defaults a pair is settled by a lead of four games.
+class SequentialTest
+{
+    public static final double DELTA = 0.2;
+    public static final double ALPHA = 0.05;
+    public static final double BETA = 0.05;
+
+    private static final double step = Math.log((0.5 + DELTA) / (0.5 - DELTA));
+    private static final double upper = Math.log((1 - BETA) / ALPHA);
+    private static final double lower = Math.log(BETA / (1 - ALPHA));
+
+    private String player;
+    private int wins, losses, ties;
+
+    // player is the first player of the pair
+    public SequentialTest(String player)
+    {
+        this.player = player;
+    }
+
+    public void record(GameResult result)
+    {
+        if (result == null || result.winner() == null)
+            ties++;
+        else if (result.winner().equals(player))
+            wins++;
+        else
+            losses++;
+    }
+
+    private double llr()
+    {
+        return (wins - losses) * step;
+    }
+
+    public boolean settled()
+    {
+        return llr() >= upper || llr() <= lower;
+    }
+
+    // +1 if the first player is the stronger one, -1 if the second is, 0 if not settled.
+    public int verdict()
+    {
+        if (llr() >= upper)
+            return 1;
+        if (llr() <= lower)
+            return -1;
+        return 0;
+    }
+
+    public int games()
+    {
+        return wins + losses + ties;
+    }
+}
@@ -12,7 +12,6 @@ package flip.sim;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -24,10 +23,12 @@ import java.util.stream.Collectors;
 import java.util.Random;
 import java.util.PriorityQueue;
 import java.util.Scanner; 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.tools.JavaCompiler;
-import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
 
 import flip.sim.Point;
 import flip.sim.Board;
@@ -42,6 +43,8 @@ public class Simulator
 {
     private static final String root = "flip";
     private static final String statics_root = "statics";
+    // compiled players, by content hash of their sources
+    private static final PlayerLoader player_loader = new PlayerLoader(root, new File(".flip_cache"));
     private static List<String> playerNames;
     private static boolean gui = false;
     private static double fps = 30;
@@ -49,39 +52,81 @@ public class Simulator
     private static Integer seed = 42;
     private static Integer runs = 1;
     private static Integer turns = 200;
+    // positions are snapped to multiples of 1/lattice, 0 for plain doubles
+    private static int lattice = 0;
+    // arena, start areas and endzones are this many times the standard size in both directions
+    private static int arena_scale = 1;
+    // end a game after this many turns without a new position, 0 to always play all turns
+    private static int stall_turns = 0;
     private static boolean swap_players = false;
     private static long timeout = 1000;
     private static String version = "1.0";
 
-    // state variables for gui
-
-    private static PlayerWrapper player1;
-    private static PlayerWrapper player2;
-
-    private static Integer player1_score;
-    private static Integer player2_score;
-
-    private static List<Point> player1_pieces_list = new ArrayList<Point>();
-    private static List<Point> player2_pieces_list = new ArrayList<Point>();
-
-    private static Integer numTurns;
-    private static Integer round;
-
-
-
-
+    private static int threads = 1;
+    // number of worker processes to play the games in, 0 to play them in this one
+    private static int workers = 0;
+    // set in the worker processes themselves
+    private static boolean worker = false;
+    // scores of games played in earlier runs, null if not used
+    private static String result_cache_file = null;
+    private static boolean invalidate_results = false;
+    private static ResultCache result_cache = null;
+    // stop the games of a pair once a sequential test settles the stronger player
+    private static boolean adaptive = false;
+    // number of recent frames the gui can still fetch
+    private static final int frame_buffer = 256;
+    // every this many frames the gui is sent all pieces rather than those that moved
+    private static final int frame_keyframe_interval = 64;
+    private static FrameEncoder frame_encoder;
+    private static String journal_dir = null;
+    private static int keyframe_interval = 50;
+    // CSV file for the players' resource usage, null if not wanted
+    private static String stats_file = null;
+    // CSV or JSON lines file with a row per game, null if not wanted
+    private static String results_file = null;
+    private static ResultsWriter results_writer = null;
+
+    // game currently shown in the gui
+    private static Game gui_game;
 
      public static void main(String[] args) throws ClassNotFoundException, InstantiationException, IllegalAccessException, IOException
      {
         parseArgs(args);
+
+        if (worker)
+        {
+            // everything is logged into the answers to the coordinator
+            Log.quiet();
+            Log.activate();
+            if (result_cache_file != null)
+                result_cache = new ResultCache(result_cache_file, false);
+            Worker.serve(result_cache);
+            Log.end();
+            System.exit(0);
+        }
        
         Log.log("parsing done");
+
+        // more pieces than random placement can fit fail every game, so find out before
+        // playing any; a board that jams below that only fails its own game
+        try
+        {
+            board_config().check_fits(n_pieces);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            Log.error(ex.getMessage());
+            Log.end();
+            System.exit(1);
+        }
+        if (arena_scale > 1)
+            Log.log("Playing on a " + board_config() + ".");
         List<Pair<String, String>> pairs = new ArrayList<Pair<String, String>>();
         HashMap<String, Pair<Integer, Integer>> player_wins = new HashMap<String, Pair<Integer, Integer>>();
 
         HTTPServer server = null;
         if (gui) {
-            server = new HTTPServer();
+            server = new HTTPServer(statics_root, new FramePublisher(frame_buffer));
             Log.record("Hosting HTTP Server on " + server.addr());
             if (!Desktop.isDesktopSupported())
                 Log.record("Desktop operations not supported");
@@ -136,182 +181,221 @@ public class Simulator
         }
 
         
+        if (gui && threads > 1)
+        {
+            Log.log("GUI enabled, games will be played one at a time.");
+            threads = 1;
+        }
+        if (gui && workers > 0)
+        {
+            Log.log("GUI enabled, games will be played in this process.");
+            workers = 0;
+        }
+
+        // Every (pair, run) game is independent, so the whole tournament is laid out up front.
+        // With --adaptive the games of a pair depend on each other and form a single job.
+        List<Pair<String, String>> jobs_pairs = new ArrayList<Pair<String, String>>();
+        List<Integer> jobs_rounds = new ArrayList<Integer>();
+        List<Integer> jobs_counts = new ArrayList<Integer>();
+        List<Boolean> jobs_swaps = new ArrayList<Boolean>();
         for(Pair<String, String> pair : pairs)
         {
             swap_players = false;
-            Log.log("###############################################################################################################");
-            Log.log("games beginning for " + pair.getKey() + " and " + pair.getValue());
-
-            round = 0;
-            for(int i=0; i < runs; i++)
+            for(int i=0; i < runs; i += adaptive ? runs : 1)
             {
-                round++;
-                try 
-                {
-                    player1 = loadPlayerWrapper(cleanName(pair.getKey()), pair.getKey());
-                    player2 = loadPlayerWrapper(cleanName(pair.getValue()), pair.getValue());
-                } 
-                catch (Exception ex) 
-                {
-                    Log.log("Unable to load players. " + ex.getMessage());
-                    System.exit(0);
-                }
-
-                if(swap_players)
-                {
-                    PlayerWrapper tmp = player1;
-                    player1 = player2;
-                    player2 = tmp;
-                }
-
-                Log.log("player 1 is" + player1.getName());
-                Log.log("player 2 is" + player2.getName());
-
-
-                Board game = new Board(n_pieces, seed+round);
-
-                Log.log("Board setup complete.");
-
-                HashMap<Integer, Point> player1_pieces = game.get_pieces(true);
-                HashMap<Integer, Point> player2_pieces = game.get_pieces(false);
-
-
-
-                numTurns = new Integer(turns);
-                player1_score = 0;
-                player2_score = 0;
-                update_lists(player1_pieces, player2_pieces);
-
-                 if (gui) 
-                 {
-                    gui(server, state(fps));
-                 }
+                jobs_pairs.add(pair);
+                jobs_rounds.add(i + 1);
+                jobs_counts.add(adaptive ? runs : 1);
+                jobs_swaps.add(swap_players);
+                swap_players = !swap_players;
+            }
+        }
 
-                try
-                {
-                    player1.init(deepClone(player1_pieces), n_pieces, turns, true, Board.get_diameter_piece());
-                    player2.init(deepClone(player2_pieces), n_pieces, turns, false, Board.get_diameter_piece());
-                }
-                catch(Exception ex)
-                {
-                    Log.log("Unable to begin game, players failed to initialize. " + ex.getMessage());
-                    continue;
-                }
+        // every player is compiled once, up front, and each game only creates new instances
+        List<String> player_packages = new ArrayList<String>();
+        for (String name : playerNames)
+            player_packages.add(cleanName(name));
+        try
+        {
+            player_loader.prepare(player_packages, Runtime.getRuntime().availableProcessors());
+        }
+        catch (IOException ex)
+        {
+            Log.error("Unable to load players. " + ex.getMessage());
+            System.exit(0);
+        }
 
-                
+        if (result_cache_file != null)
+        {
+            try
+            {
+                result_cache = new ResultCache(result_cache_file, invalidate_results);
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to open result cache " + result_cache_file + ". " + ex.getMessage());
+            }
+        }
 
-                Integer curr_score_player_1 = 0;
-                Integer curr_score_player_2 = 0;
-                PlayerWrapper winner;
-                Integer winner_score;
+        if (results_file != null)
+        {
+            try
+            {
+                results_writer = new ResultsWriter(results_file);
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to open results file " + results_file + ". " + ex.getMessage());
+            }
+        }
 
-                for(int j=0;j<turns;j++)
+        ExecutorService pool = null;
+        WorkerPool worker_pool = null;
+        List<Future<List<GameResult>>> results = new ArrayList<Future<List<GameResult>>>();
+        final List<List<Log.Line>> captured = new ArrayList<List<Log.Line>>(Collections.nCopies(jobs_pairs.size(), (List<Log.Line>) null));
+        if (workers > 0)
+        {
+            Log.log("Playing " + jobs_pairs.size() + (adaptive ? " pairings" : " games") + " in " + workers + " worker processes.");
+            worker_pool = new WorkerPool(worker_command(), workers, result_cache);
+            for(int k=0; k < jobs_pairs.size(); k++)
+                results.add(worker_pool.submit(k, jobs_pairs.get(k), jobs_rounds.get(k), jobs_counts.get(k), jobs_swaps.get(k), captured));
+        }
+        else if (threads > 1)
+        {
+            Log.log("Playing " + jobs_pairs.size() + (adaptive ? " pairings" : " games") + " on " + threads + " threads.");
+            pool = Executors.newFixedThreadPool(threads);
+            for(int k=0; k < jobs_pairs.size(); k++)
+            {
+                final Pair<String, String> pair = jobs_pairs.get(k);
+                final Integer job_round = jobs_rounds.get(k);
+                final Integer job_count = jobs_counts.get(k);
+                final boolean job_swap = jobs_swaps.get(k);
+                final int job = k;
+                results.add(pool.submit(new Callable<List<GameResult>>()
                 {
-                    numTurns--;
-                    if(j == 0)
-                    {
-                        play_turn(player1, player2, game, 1, true);
-                        player1_score = curr_score_player_1;
-
-                        if (gui) 
-                         {
-                            gui(server, state(fps));
-                         }
-
-                        play_turn(player1, player2, game, 2, false);
-                        player2_score = curr_score_player_2;
-
-                        if (gui) 
-                         {
-                            gui(server, state(fps));
-                         }
-                    }
-                    else
+                    @Override
+                    public List<GameResult> call() throws Exception
                     {
-                        curr_score_player_1  = Math.max(play_turn(player1, player2, game, 2, true), curr_score_player_1);
-                        player1_score = curr_score_player_1;
-
-                        if(curr_score_player_1 == n_pieces)
+                        Log.capture();
+                        try
                         {
-                            winner = player1;
-                            break;
+                            return play_games(pair, job_round, job_count, job_swap, null);
                         }
-
-                         if (gui) 
-                         {
-                            gui(server, state(fps));
-                         }
-
-                        curr_score_player_2  = Math.max(play_turn(player1, player2, game, 2, false), curr_score_player_2);
-                        player2_score = curr_score_player_2;
-
-                        if(curr_score_player_2 == n_pieces)
+                        finally
                         {
-                            winner = player2;
-                            break;
+                            captured.set(job, Log.release());
                         }
-
-                        if (gui) 
-                         {
-                            gui(server, state(fps));
-                         }
                     }
-                }
-
-                if (curr_score_player_1 > curr_score_player_2) 
-                    {
-                        winner = player1;
-                    }
-                else if (curr_score_player_1 != curr_score_player_2)
-                    {
-                        winner = player2;
-                    }
-                else
-                    winner = null;
+                }));
+            }
+        }
 
-                Log.log("--------------------------------------------------------------------------------------------------------------");
-                Log.log("Player 1: "+player1.getName()+" scored " + curr_score_player_1.toString() + " points at the end of this round");
-                Log.log("Player 2: "+player2.getName()+" scored " + curr_score_player_2.toString() + " points at the end of this round");
+        // Results are merged in tournament order, so the log and the win table do not depend on the number of threads.
+        int games_played = 0;
+        for(int k=0; k < jobs_pairs.size(); k++)
+        {
+            Pair<String, String> pair = jobs_pairs.get(k);
+            if (jobs_rounds.get(k) == 1)
+            {
+                Log.log("###############################################################################################################");
+                Log.log("games beginning for " + pair.getKey() + " and " + pair.getValue());
+            }
 
-                if(winner == null)
+            List<GameResult> played;
+            if (results.isEmpty())
+            {
+                played = play_games(pair, jobs_rounds.get(k), jobs_counts.get(k), jobs_swaps.get(k), server);
+            }
+            else
+            {
+                try
                 {
-                    Log.log("This round of the game ended in a tie.");
+                    played = results.get(k).get();
                 }
-                else
+                catch (InterruptedException | ExecutionException ex)
                 {
-                    Log.log(winner.getName() + " won the round.");
-                    if (winner == player1)
-                    {
-                        Pair<Integer,Integer> wins = player_wins.get(winner.getName());
-                        player_wins.put(winner.getName(), new Pair<Integer, Integer>(wins.getKey()+1, wins.getValue()));
-                    }
-                    else
-                    {
-                        Pair<Integer,Integer> wins = player_wins.get(winner.getName());
-                        player_wins.put(winner.getName(), new Pair<Integer, Integer>(wins.getKey(), wins.getValue()+1));
-                    }
+                    Log.error("Game " + jobs_rounds.get(k) + " between " + pair.getKey() + " and " + pair.getValue() + " failed. " + ex.getMessage());
+                    played = Collections.singletonList(null);
                 }
+                Log.flush(captured.get(k));
+            }
+            games_played += played.size();
+            write_results(jobs_rounds.get(k), played);
 
-                if (gui) 
-                 {
-                    gui(server, state(fps));
-                 }
-
-                swap_players = !swap_players;
-
-                Log.log("--------------------------------------------------------------------------------------------------------------");
+            if (adaptive)
+            {
+                SequentialTest test = new SequentialTest(pair.getKey());
+                for (GameResult result : played)
+                    test.record(result);
+                if (test.verdict() == 0)
+                    Log.log("No clear winner between " + pair.getKey() + " and " + pair.getValue() + " after " + test.games() + " games.");
+                else
+                    Log.log((test.verdict() > 0 ? pair.getKey() : pair.getValue()) + " is the stronger player, settled after " + test.games() + " of " + runs + " games.");
             }
 
+            for (GameResult result : played)
+            {
+                if (result == null || result.winner() == null)
+                    continue;
 
+                Pair<Integer,Integer> wins = player_wins.get(result.winner());
+                if (result.player1_won())
+                    player_wins.put(result.winner(), new Pair<Integer, Integer>(wins.getKey()+1, wins.getValue()));
+                else
+                    player_wins.put(result.winner(), new Pair<Integer, Integer>(wins.getKey(), wins.getValue()+1));
+            }
         }
 
+        if (pool != null)
+            pool.shutdown();
+        if (worker_pool != null)
+            worker_pool.shutdown();
+
         Log.log("All games concluded!");
+        if (results_writer != null)
+        {
+            try
+            {
+                results_writer.close();
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to write results to " + results_file + ". " + ex.getMessage());
+            }
+        }
+        if (result_cache != null)
+        {
+            Log.log(result_cache.hits() + " games were taken from the result cache, " + result_cache.stores() + " new results were stored.");
+            try
+            {
+                result_cache.close();
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to write to the result cache. " + ex.getMessage());
+            }
+        }
+        if (adaptive)
+            Log.log("Adaptive stopping played " + games_played + " of " + pairs.size() * runs + " games, " + (pairs.size() * runs - games_played) + " saved.");
         Log.log("----------------------------------------------Summary of results------------------------------------------");
         Log.log("player name \t wins as first \t wins as second");
         for (HashMap.Entry<String, Pair<Integer, Integer>> entry : player_wins.entrySet()) 
         {
            Log.log(entry.getKey() + "\t\t" + entry.getValue().getKey().toString() + "\t\t" + entry.getValue().getValue().toString());
         }
+        Log.log("----------------------------------------------Player resource usage---------------------------------------");
+        PlayerStats.summary();
+        if (stats_file != null)
+        {
+            try
+            {
+                PlayerStats.write(stats_file);
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to write player statistics to " + stats_file + ". " + ex.getMessage());
+            }
+        }
 
         Log.log("----------------------------------------------End of log.-------------------------------------------------");
 
@@ -319,7 +403,8 @@ public class Simulator
 
          if (gui) 
           {
-             gui(server, state(fps));
+             if (gui_game != null)
+                gui_game.show();
              Scanner in = new Scanner(System.in); 
              String s = in.nextLine(); 
           }
@@ -340,71 +425,152 @@ public class Simulator
 
         return res;
      }
-     private static Integer play_turn(PlayerWrapper player1, PlayerWrapper player2, Board game, Integer num_moves, boolean isplayer1 )
+     // Plays up to count games of a pair starting at the given round, alternating who moves
+     // first. With --adaptive it stops as soon as the stronger player is settled, checked
+     // after an even number of games so that both players were first equally often.
+     static List<GameResult> play_games(Pair<String, String> pair, Integer first_round, Integer count, boolean swap, HTTPServer server)
      {
-        Integer score = 0;
-        List<Pair<Integer, Point>> moves;
-        HashMap<Integer, Point> player1_pieces = game.get_pieces(true);
-        HashMap<Integer, Point> player2_pieces = game.get_pieces(false);
+        List<GameResult> played = new ArrayList<GameResult>();
+        SequentialTest test = new SequentialTest(pair.getKey());
+        for (int i = 0; i < count; i++)
+        {
+            GameResult result = play_game(pair, first_round + i, swap, server);
+            played.add(result);
+            swap = !swap;
+            test.record(result);
+            if (adaptive && played.size() % 2 == 0 && test.settled())
+                break;
+        }
+        return played;
+     }
 
+     // Adds a row for each game played, starting at first_round, to the results file.
+     private static void write_results(int first_round, List<GameResult> played)
+     {
+        if (results_writer == null)
+            return;
         try
         {
-            if(isplayer1)
-            {
-                moves = player1.getMoves(num_moves,deepClone(player1_pieces), deepClone(player2_pieces), true);
-            }
-            else
-            {
-                moves = player2.getMoves(num_moves, deepClone(player2_pieces), deepClone(player1_pieces), false);
-            }
-
-            if(moves.size()>num_moves)
-                    Log.record("More moves than requested returned. Only first "+ num_moves.toString()+ " were considered.");
-
-            Integer i=0;
-            for(Pair<Integer, Point> move : moves)
-                {
-                    i++;
-                    if(i>num_moves) break;
-
-                    if(game.check_valid_move(move, isplayer1))
-                    {
-                        Log.record("Player " + (isplayer1? "1":"2") + " moved piece "+ move.getKey() + " to "+ move.getValue());
-                        game.move_piece(move, isplayer1);
-                    }
-                    else
-                    {
-                        Log.record("Player "+ (isplayer1? "1":"2") +" could not move piece "+ move.getKey() + " to "+ move.getValue() + ". Invalid move.");
-                    }
-                }
-
-            score = game.get_score(isplayer1);
-
+            for (int i = 0; i < played.size(); i++)
+                if (played.get(i) != null)
+                    results_writer.write(first_round + i, seed + first_round + i, played.get(i));
         }
-        catch(Exception ex)
+        catch (IOException ex)
         {
-            Log.record("Player " + (isplayer1? "1":"2") + "turn ended with an exception. "  + ex.getMessage());
+            Log.error("Unable to write results to " + results_file + ", no more results are written. " + ex.getMessage());
+            results_writer = null;
         }
-        
-        update_lists(player1_pieces, player2_pieces);
-        return score;
+     }
 
+     // Geometry of the boards of this run.
+     private static BoardConfig board_config()
+     {
+        return BoardConfig.standard().scaled(arena_scale).with_lattice(lattice);
      }
 
-     private static void update_lists(HashMap<Integer, Point> player1_pieces, HashMap<Integer, Point> player2_pieces)
+     // Starts a worker process with the settings of this run.
+     private static List<String> worker_command()
      {
-        player1_pieces_list.clear();
-        player2_pieces_list.clear();
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Simulator.class.getName());
+        command.add("--worker");
+        command.addAll(Arrays.asList("-n", n_pieces.toString(), "-s", seed.toString(), "-t", turns.toString(), "--log_level", Log.getLevel().name()));
+        if (adaptive)
+            command.add("--adaptive");
+        if (lattice > 0)
+            command.addAll(Arrays.asList("--lattice", String.valueOf(lattice)));
+        if (arena_scale > 1)
+            command.addAll(Arrays.asList("--arena_scale", String.valueOf(arena_scale)));
+        if (stall_turns > 0)
+            command.addAll(Arrays.asList("--stall", String.valueOf(stall_turns)));
+        if (result_cache_file != null)
+            command.addAll(Arrays.asList("--results_cache", result_cache_file));
+        if (journal_dir != null)
+            command.addAll(Arrays.asList("--journal", journal_dir, "--keyframe_interval", String.valueOf(keyframe_interval)));
+        return command;
+     }
+
+     // Loads fresh instances of both players and plays one game between them.
+     private static GameResult play_game(Pair<String, String> pair, Integer round, boolean swap, HTTPServer server)
+     {
+        PlayerWrapper player1 = null;
+        PlayerWrapper player2 = null;
+        try 
+        {
+            player1 = loadPlayerWrapper(cleanName(pair.getKey()), pair.getKey());
+            player2 = loadPlayerWrapper(cleanName(pair.getValue()), pair.getValue());
+        } 
+        catch (Exception ex) 
+        {
+            Log.error("Unable to load players. " + ex.getMessage());
+            System.exit(0);
+        }
+
+        if(swap)
+        {
+            PlayerWrapper tmp = player1;
+            player1 = player2;
+            player2 = tmp;
+        }
 
-         for (HashMap.Entry<Integer, Point> entry : player1_pieces.entrySet()) 
+        // everything the outcome of the game depends on
+        String key = null;
+        if (result_cache != null)
         {
-            player1_pieces_list.add(entry.getValue());    
+            try
+            {
+                key = player_loader.hash(cleanName(player1.getName())) + "," + player_loader.hash(cleanName(player2.getName()))
+                    + "," + (seed + round) + "," + n_pieces + "," + turns + "," + timeout + (stall_turns > 0 ? ",stall" + stall_turns : "") + (lattice > 0 ? ",lattice" + lattice : "") + (arena_scale > 1 ? ",arena" + arena_scale : "");
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to hash players, result cache not used. " + ex.getMessage());
+            }
         }
 
-         for (HashMap.Entry<Integer, Point> entry : player2_pieces.entrySet()) 
+        // a game shown in the gui or written to a journal has to be played
+        if (key != null && server == null && journal_dir == null)
         {
-            player2_pieces_list.add(entry.getValue());    
+            GameResult cached = result_cache.get(key, player1.getName(), player2.getName());
+            if (cached != null)
+            {
+                Log.log("Round " + round + " between " + player1.getName() + " and " + player2.getName() + " was found in the result cache.");
+                Log.log("Player 1: " + cached.player1 + " scored " + cached.player1_score + " points at the end of this round");
+                Log.log("Player 2: " + cached.player2 + " scored " + cached.player2_score + " points at the end of this round");
+                if (cached.winner() == null)
+                    Log.log("This round of the game ended in a tie.");
+                else
+                    Log.log(cached.winner() + " won the round.");
+                return cached;
+            }
         }
+
+        Game game = new Game(player1, player2, n_pieces, turns, seed, round, server, fps);
+        if (stall_turns > 0)
+            game.detect_stalls(stall_turns);
+        game.use_config(board_config());
+        if (journal_dir != null)
+            game.record_journal(journal_dir + File.separator + player1.getName() + "_" + player2.getName() + "_" + round + ".journal", keyframe_interval);
+        if (server != null)
+            gui_game = game;
+        GameResult result = game.play();
+
+        // a game in which a player ran out of time might go differently next time
+        if (key != null && result != null && !player1.timed_out() && !player2.timed_out())
+        {
+            try
+            {
+                result_cache.put(key, result);
+            }
+            catch (IOException ex)
+            {
+                Log.error("Unable to write to the result cache. " + ex.getMessage());
+            }
+        }
+        return result;
      }
 
      private static void parseArgs(String[] args) 
@@ -445,6 +611,18 @@ public class Simulator
                     {
                         Log.verbose();
                     } 
+                    else if (args[i].equals("-q") || args[i].equals("--quiet")) 
+                    {
+                        Log.quiet();
+                    } 
+                    else if (args[i].equals("--log_level")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing log level.");
+                        }
+                        Log.setLevel(Log.Level.valueOf(args[i].toUpperCase()));
+                    } 
                     else if (args[i].equals("--fps")) 
                     {
                         if (++i == args.length) 
@@ -478,6 +656,123 @@ public class Simulator
                         }
                         runs = Integer.parseInt(args[i]);
                     }
+                    else if (args[i].equals("--threads")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing number of threads.");
+                        }
+                        threads = Integer.parseInt(args[i]);
+                        if (threads < 1)
+                        {
+                            throw new IllegalArgumentException("Number of threads must be positive.");
+                        }
+                    }
+                    else if (args[i].equals("--workers")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing number of workers.");
+                        }
+                        workers = Integer.parseInt(args[i]);
+                        if (workers < 0)
+                        {
+                            throw new IllegalArgumentException("Number of workers must not be negative.");
+                        }
+                    }
+                    else if (args[i].equals("--worker")) 
+                    {
+                        worker = true;
+                    }
+                    else if (args[i].equals("--results_cache")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing result cache file.");
+                        }
+                        result_cache_file = args[i];
+                    }
+                    else if (args[i].equals("--invalidate")) 
+                    {
+                        invalidate_results = true;
+                    }
+                    else if (args[i].equals("--adaptive")) 
+                    {
+                        adaptive = true;
+                    }
+                    else if (args[i].equals("--journal")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing journal directory.");
+                        }
+                        journal_dir = args[i];
+                        new File(journal_dir).mkdirs();
+                    }
+                    else if (args[i].equals("--lattice")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing lattice resolution.");
+                        }
+                        lattice = Integer.parseInt(args[i]);
+                        if (lattice != 0 && (lattice < 100 || lattice > 1000000))
+                        {
+                            throw new IllegalArgumentException("Lattice resolution must be between 100 and 1000000.");
+                        }
+                    }
+                    else if (args[i].equals("--arena_scale")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing arena scale.");
+                        }
+                        arena_scale = Integer.parseInt(args[i]);
+                        if (arena_scale < 1 || arena_scale > 100)
+                        {
+                            throw new IllegalArgumentException("Arena scale must be between 1 and 100.");
+                        }
+                    }
+                    else if (args[i].equals("--stall")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing number of turns for stall detection.");
+                        }
+                        stall_turns = Integer.parseInt(args[i]);
+                        if (stall_turns < 0)
+                        {
+                            throw new IllegalArgumentException("Number of turns for stall detection must not be negative.");
+                        }
+                    }
+                    else if (args[i].equals("--results")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing results file.");
+                        }
+                        results_file = args[i];
+                    }
+                    else if (args[i].equals("--stats")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing statistics file.");
+                        }
+                        stats_file = args[i];
+                    }
+                    else if (args[i].equals("--keyframe_interval")) 
+                    {
+                        if (++i == args.length) 
+                        {
+                            throw new IllegalArgumentException("Missing keyframe interval.");
+                        }
+                        keyframe_interval = Integer.parseInt(args[i]);
+                        if (keyframe_interval < 1)
+                        {
+                            throw new IllegalArgumentException("Keyframe interval must be positive.");
+                        }
+                    }
                     else if (args[i].equals("-t") || args[i].equals("--turns")) 
                     {
                         if (++i == args.length) 
@@ -508,56 +803,19 @@ public class Simulator
         Log.log("Loading player " + name);
         Player p = loadPlayer(name);
         if (p == null) {
-            Log.log("Cannot load player " + name);
+            Log.error("Cannot load player " + name);
             System.exit(1);
         }
 
         return new PlayerWrapper(p, mod_name, timeout);
     }
 
-    public static Player loadPlayer(String name) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException 
+    public static Player loadPlayer(String name) throws IOException, ReflectiveOperationException
     {
-        String sep = File.separator;
-        Set<File> player_files = directory(root + sep + name, ".java");
-        File class_file = new File(root + sep + name + sep + "Player.class");
-        long class_modified = class_file.exists() ? class_file.lastModified() : -1;
-        if (class_modified < 0 || class_modified < last_modified(player_files) ||
-                class_modified < last_modified(directory(root + sep + "sim", ".java"))) {
-            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if (compiler == null)
-                throw new IOException("Cannot find Java compiler");
-            StandardJavaFileManager manager = compiler.
-                    getStandardFileManager(null, null, null);
-//            long files = player_files.size();
-            Log.log("Compiling for player " + name);
-            if (!compiler.getTask(null, manager, null, null, null,
-                    manager.getJavaFileObjectsFromFiles(player_files)).call())
-                throw new IOException("Compilation failed");
-            class_file = new File(root + sep + name + sep + "Player.class");
-            if (!class_file.exists())
-                throw new FileNotFoundException("Missing class file");
-        }
-        ClassLoader loader = Simulator.class.getClassLoader();
-        if (loader == null)
-            throw new IOException("Cannot find Java class loader");
-        @SuppressWarnings("rawtypes")
-        Class raw_class = loader.loadClass(root + "." + name + ".Player");
-        return (Player)raw_class.newInstance();
+        return player_loader.instance(name);
     }
 
-    private static long last_modified(Iterable<File> files) 
-    {
-        long last_date = 0;
-        for (File file : files) 
-        {
-            long date = file.lastModified();
-            if (last_date < date)
-                last_date = date;
-        }
-        return last_date;
-    }
-
-    private static Set<File> directory(String path, String extension) {
+    static Set<File> directory(String path, String extension) {
         Set<File> files = new HashSet<File>();
         Set<File> prev_dirs = new HashSet<File>();
         prev_dirs.add(new File(path));
@@ -575,98 +833,13 @@ public class Simulator
         return files;
     }
 
-    private static <T extends Object> T deepClone(T object) {
-        if (object == null) {
-            return null;
-        }
-
-        try {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-            objectOutputStream.writeObject(object);
-            ByteArrayInputStream bais = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
-            ObjectInputStream objectInputStream = new ObjectInputStream(bais);
-            return (T) objectInputStream.readObject();
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
-    private static void gui(HTTPServer server, String content) {
+    static void gui(HTTPServer server, Game game) {
         if (server == null) return;
-        String path = null;
-        for (;;) {
-            for (;;) {
-                try {
-                    path = server.request();
-                    break;
-                } catch (IOException e) {
-                    Log.record("HTTP request error " + e.getMessage());
-                }
-            }
-            if (path.equals("data.txt")) {
-                try {
-                    server.reply(content);
-                } catch (IOException e) {
-                    Log.record("HTTP dynamic reply error " + e.getMessage());
-                }
-                return;
-            }
-            if (path.equals("")) path = "webpage.html";
-            else if (!Character.isLetter(path.charAt(0))) {
-                Log.record("Potentially malicious HTTP request \"" + path + "\"");
-                break;
-            }
-
-            File file = new File(statics_root + File.separator + path);
-            if (file == null) {
-                Log.record("Unknown HTTP request \"" + path + "\"");
-            } else {
-                try {
-                    server.reply(file);
-                } catch (IOException e) {
-                    Log.record("HTTP static reply error " + e.getMessage());
-                }
-            }
-        }
-    }
-
-
-    // The state that is sent to the GUI. (JSON)
-    private static String state(double fps) {
-        String json = "{ \"refresh\":" + (1000.0/fps) + ",\"curr_round\":" + (int)round + ",\"remaining_turns\":" + (int)numTurns + ",";
-
-        json+= "\"player1\":" + "\"" + player1.getName() + "\"" + ",\"player2\":" + "\"" + player2.getName() + "\"" + ",\"player1_score\":" + (int)player1_score + ",\"player2_score\":" + (int)player2_score + ",";  
-        
-        json += "\"player1_pieces\":[";
-        for (int i = 0; i < player1_pieces_list.size(); i++)
-        {
-            Point p =  player1_pieces_list.get(i);
-            json += "{\"x\" : " + p.x + ",\"y\" : " + p.y + "}";
-            if (i !=  player1_pieces_list.size() - 1)
-            {
-                json += ",";
-            }
-        }
-        json += "],";
-        
-         json += "\"player2_pieces\":[";
-        for (int i = 0; i < player2_pieces_list.size(); i++)
-        {
-            Point p =  player2_pieces_list.get(i);
-            json += "{\"x\" : " + p.x + ",\"y\" : " + p.y + "}";
-            if (i !=  player2_pieces_list.size() - 1)
-            {
-                json += ",";
-            }
-        }
-        // json += "],";
-        
-        json += "]}";
-        return json;
+        if (frame_encoder == null)
+            frame_encoder = new FrameEncoder(frame_keyframe_interval);
+        game.encode(frame_encoder);
+        server.publish(frame_encoder.bytes(), frame_encoder.keyframe());
     }
 
 
-}
+}
\ No newline at end of file
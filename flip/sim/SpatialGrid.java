@@ -0,0 +1,118 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.util.Arrays;
+
+// Uniform grid over the arena that buckets piece ids by position.
+// With the cell size equal to the piece diameter, every piece closer than one diameter
+// to a point lies in the 3x3 block of cells around that point.
+class SpatialGrid
+{
+    private double x_min, y_min;
+    private double cell;
+    private int cols, rows;
+    private int[][] ids;
+    private int[] counts;
+
+    public SpatialGrid(double x_min, double x_max, double y_min, double y_max, double cell)
+    {
+        this.x_min = x_min;
+        this.y_min = y_min;
+        this.cell = cell;
+        cols = (int) Math.floor((x_max - x_min) / cell) + 1;
+        rows = (int) Math.floor((y_max - y_min) / cell) + 1;
+        ids = new int[cols * rows][];
+        counts = new int[cols * rows];
+    }
+
+    // An independent copy of other.
+    public SpatialGrid(SpatialGrid other)
+    {
+        x_min = other.x_min;
+        y_min = other.y_min;
+        cell = other.cell;
+        cols = other.cols;
+        rows = other.rows;
+        ids = new int[other.ids.length][];
+        for (int i = 0; i < ids.length; i++)
+            if (other.ids[i] != null)
+                ids[i] = other.ids[i].clone();
+        counts = other.counts.clone();
+    }
+
+    public int col(double x)
+    {
+        return (int) Math.floor((x - x_min) / cell);
+    }
+
+    public int row(double y)
+    {
+        return (int) Math.floor((y - y_min) / cell);
+    }
+
+    // Index of the cell at (col, row), or -1 if it lies outside the grid.
+    public int index(int col, int row)
+    {
+        if (col < 0 || col >= cols || row < 0 || row >= rows)
+            return -1;
+        return row * cols + col;
+    }
+
+    public int[] ids(int index)
+    {
+        return ids[index];
+    }
+
+    public int count(int index)
+    {
+        return counts[index];
+    }
+
+    public void add(int id, double x, double y)
+    {
+        int c = clamped(x, y);
+        int[] bucket = ids[c];
+        if (bucket == null)
+            bucket = ids[c] = new int[4];
+        else if (counts[c] == bucket.length)
+            bucket = ids[c] = Arrays.copyOf(bucket, bucket.length * 2);
+        bucket[counts[c]++] = id;
+    }
+
+    public void remove(int id, double x, double y)
+    {
+        int c = clamped(x, y);
+        int[] bucket = ids[c];
+        for (int i = 0; i < counts[c]; i++)
+            if (bucket[i] == id)
+            {
+                bucket[i] = bucket[--counts[c]];
+                return;
+            }
+    }
+
+    public void move(int id, double old_x, double old_y, double x, double y)
+    {
+        if (clamped(old_x, old_y) == clamped(x, y))
+            return;
+        remove(id, old_x, old_y);
+        add(id, x, y);
+    }
+
+    // Pieces are stored in the nearest cell even if they sit a tolerance outside the arena.
+    private int clamped(double x, double y)
+    {
+        int c = Math.min(Math.max(col(x), 0), cols - 1);
+        int r = Math.min(Math.max(row(y), 0), rows - 1);
+        return r * cols + c;
+    }
+}
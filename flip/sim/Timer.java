@@ -7,74 +7,126 @@
 
 	Author: Vaibhav Darbari
 	Simulator Version: 1.0
-	
+
 */
 package flip.sim;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Runs player calls on a pool of threads shared by all players and games. A call that
+// times out is interrupted; until it actually returns, the next call of the same player
+// waits for it (within its own time limit) so a player never runs twice at once.
+// A call logs and sees the board config (BoardConfig.current) of the thread starting it.
+class Timer {
+
+	private static final AtomicInteger threads = new AtomicInteger();
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "flip-player-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
-class Timer extends Thread {
+	private static final ThreadMXBean mxbean = ManagementFactory.getThreadMXBean();
+	private static final boolean cpu_time = mxbean.isCurrentThreadCpuTimeSupported();
+	private static final com.sun.management.ThreadMXBean allocation = allocation_bean();
 
-	private boolean start = false;
-	private boolean finished = false;
-	private Callable <?> task = null;
-	private Exception error = null;
-	private Object result = null;
-	private long startTime, endTime;
+	private final ReentrantLock running = new ReentrantLock();
+	private Future<?> pending = null;
+	private volatile long startTime, endTime;
+	// CPU time and bytes allocated by the last call that finished, -1 if not measured
+	private volatile long cpuTime = -1, allocatedBytes = -1;
 
 	public <T> void call_start(Callable <T> task) {
-		if (!isAlive()) throw new IllegalStateException();
 		if (task == null) throw new IllegalArgumentException();
-		this.task = task;
-		synchronized (this) {
-			start = true;
-			this.startTime = System.currentTimeMillis();
-			notify();
-		}
+		if (pending != null) throw new IllegalStateException();
+		final List<Log.Line> lines = Log.capturing();
+		final BoardConfig config = BoardConfig.current();
+		this.startTime = System.nanoTime();
+		pending = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				running.lockInterruptibly();
+				Log.capture(lines);
+				BoardConfig.use(config);
+				long thread = Thread.currentThread().getId();
+				long cpu = cpu_time ? mxbean.getCurrentThreadCpuTime() : -1;
+				long allocated = allocation != null ? allocation.getThreadAllocatedBytes(thread) : -1;
+				try {
+					return task.call();
+				} finally {
+					cpuTime = cpu >= 0 ? mxbean.getCurrentThreadCpuTime() - cpu : -1;
+					allocatedBytes = allocated >= 0 ? allocation.getThreadAllocatedBytes(thread) - allocated : -1;
+					endTime = System.nanoTime();
+					Log.capture(null);
+					BoardConfig.use(null);
+					running.unlock();
+				}
+			}
+		});
 	}
 
 	public <T> T call_wait(long timeout) throws Exception {
 		if (timeout < 0) throw new IllegalArgumentException();
-		synchronized (this) {
-			if (finished == false)
-				try {
-					wait(timeout);
-				} catch (InterruptedException e) {}
-		}
-		if (finished == false)
-			throw new TimeoutException();
-		finished = false;
-		if (error != null) throw error;
+		if (pending == null) throw new IllegalStateException();
 		@SuppressWarnings("unchecked")
-		T result_T = (T) result;
-		return result_T;
-	}
-
-	public void run() {
-		for (;;) {
-			synchronized (this) {
-				if (start == false)
-					try {
-						wait();
-					} catch (InterruptedException e) {}
-			}
-			start = false;
-			error = null;
-			try {
-				result = task.call();
-			} catch (Exception e) {
-				error = e;
-			}
-			synchronized (this) {
-				this.endTime = System.currentTimeMillis();
-				finished = true;
-				notify();
-			}
+		Future<T> future = (Future<T>) pending;
+		pending = null;
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			throw e;
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw e;
 		}
 	}
-	
+
+	// Time taken by the last call that finished, in milliseconds.
 	public long getElapsedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+	}
+
+	public long getElapsedNanos() {
 		return endTime - startTime;
 	}
-}
\ No newline at end of file
+
+	public long getCpuNanos() {
+		return cpuTime;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	private static com.sun.management.ThreadMXBean allocation_bean() {
+		if (!(mxbean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) mxbean;
+		if (!bean.isThreadAllocatedMemorySupported())
+			return null;
+		if (!bean.isThreadAllocatedMemoryEnabled())
+			bean.setThreadAllocatedMemoryEnabled(true);
+		return bean;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.util.Pair;
+
+// The side of a worker process (Simulator --worker) that plays the jobs WorkerPool sends it.
+//
+// Jobs come in on standard input and the answers go out on standard output, both as
+// binary messages. A job is its index, the two player names, the first round, the number
+// of games and whether the players swap for the first game; a negative index asks the
+// worker to stop. The answer is the job index, the lines the games logged, the results
+// with their details, the result cache hits and stores, and the player statistics
+// recorded since the last answer. Whatever the players print goes to standard error instead.
+class Worker
+{
+    static void serve(ResultCache cache) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        int hits = 0, stores = 0;
+        for (;;)
+        {
+            int job;
+            try
+            {
+                job = in.readInt();
+            }
+            catch (EOFException ex)
+            {
+                return;
+            }
+            if (job < 0)
+                return;
+            Pair<String, String> pair = new Pair<String, String>(read_string(in), read_string(in));
+            int round = in.readInt();
+            int count = in.readInt();
+            boolean swap = in.readBoolean();
+
+            List<GameResult> played = null;
+            String failure = null;
+            List<Log.Line> lines;
+            Log.capture();
+            try
+            {
+                played = Simulator.play_games(pair, round, count, swap, null);
+            }
+            catch (RuntimeException ex)
+            {
+                failure = ex.toString();
+            }
+            finally
+            {
+                lines = Log.release();
+            }
+
+            out.writeInt(job);
+            write_lines(out, lines);
+            if (played == null)
+            {
+                out.writeInt(-1);
+                write_string(out, failure);
+            }
+            else
+            {
+                out.writeInt(played.size());
+                for (GameResult result : played)
+                {
+                    out.writeBoolean(result != null);
+                    if (result == null)
+                        continue;
+                    write_string(out, result.player1);
+                    write_string(out, result.player2);
+                    out.writeInt(result.player1_score);
+                    out.writeInt(result.player2_score);
+                    out.writeBoolean(result.details != null);
+                    if (result.details != null)
+                        result.details.write(out);
+                }
+            }
+            int new_hits = cache == null ? 0 : cache.hits();
+            int new_stores = cache == null ? 0 : cache.stores();
+            out.writeInt(new_hits - hits);
+            out.writeInt(new_stores - stores);
+            hits = new_hits;
+            stores = new_stores;
+            PlayerStats.send(out);
+            out.flush();
+        }
+    }
+
+    private static void write_lines(DataOutputStream out, List<Log.Line> lines) throws IOException
+    {
+        List<Log.Line> copy = new ArrayList<Log.Line>();
+        if (lines != null)
+            synchronized (lines)
+            {
+                copy.addAll(lines);
+            }
+        out.writeInt(copy.size());
+        for (Log.Line line : copy)
+        {
+            out.writeLong(line.time);
+            write_string(out, line.text);
+            out.writeBoolean(line.error);
+        }
+    }
+
+    static List<Log.Line> read_lines(DataInputStream in) throws IOException
+    {
+        int size = in.readInt();
+        List<Log.Line> lines = new ArrayList<Log.Line>(size);
+        for (int i = 0; i < size; i++)
+        {
+            long time = in.readLong();
+            String text = read_string(in);
+            lines.add(new Log.Line(time, text, in.readBoolean()));
+        }
+        return lines;
+    }
+
+    // Strings are sent as their length and UTF-8 bytes, as log lines can be longer than
+    // writeUTF allows.
+    static void write_string(DataOutputStream out, String str) throws IOException
+    {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String read_string(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+    Project: Flip
+    Course: Programming & Problem Solving
+    Year : 2019
+    Instructor: Prof. Kenneth Ross
+    URL: http://www.cs.columbia.edu/~kar/4444f19/
+
+    Simulator Version: 1.0
+
+*/
+package flip.sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javafx.util.Pair;
+
+// Plays jobs in worker processes, each a JVM of its own, so that players do not share a
+// heap or garbage collector with each other or with the simulator.
+//
+// Every worker process is driven by a thread of its own, which takes the next job from a
+// shared queue, sends it (see Worker for the messages) and waits for the answer. A worker
+// that stops before answering is started again and gets the same job, up to max_attempts
+// times; after that the job fails. The lines a job logged end up in captured, to be written
+// out in tournament order like those of jobs played on threads.
+class WorkerPool
+{
+    private static final int max_attempts = 3;
+
+    private List<String> command;
+    private ResultCache cache;
+    private BlockingQueue<Job> queue = new LinkedBlockingQueue<Job>();
+    private List<Thread> threads = new ArrayList<Thread>();
+    private static final Job stop = new Job(-1, null, 0, 0, false, null);
+
+    private static class Job
+    {
+        final int index;
+        final Pair<String, String> pair;
+        final int round, count;
+        final boolean swap;
+        final List<List<Log.Line>> captured;
+        final CompletableFuture<List<GameResult>> result = new CompletableFuture<List<GameResult>>();
+
+        Job(int index, Pair<String, String> pair, int round, int count, boolean swap, List<List<Log.Line>> captured)
+        {
+            this.index = index;
+            this.pair = pair;
+            this.round = round;
+            this.count = count;
+            this.swap = swap;
+            this.captured = captured;
+        }
+    }
+
+    private static class Connection
+    {
+        Process process;
+        DataInputStream in;
+        DataOutputStream out;
+    }
+
+    // A job that failed inside the worker, carrying the worker's description of the error.
+    private static class WorkerException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        WorkerException(String message)
+        {
+            super(message);
+        }
+
+        @Override
+        public String toString()
+        {
+            return getMessage();
+        }
+    }
+
+    // command starts a worker process; cache, if not null, is told about the hits and
+    // stores of the workers.
+    public WorkerPool(List<String> command, int workers, ResultCache cache)
+    {
+        this.command = command;
+        this.cache = cache;
+        for (int i = 0; i < workers; i++)
+        {
+            final int id = i + 1;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(id);
+                }
+            }, "flip-worker-" + id);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    // Queues the job with the given index; its log lines go to captured.get(index).
+    public Future<List<GameResult>> submit(int index, Pair<String, String> pair, int round, int count, boolean swap, List<List<Log.Line>> captured)
+    {
+        Job job = new Job(index, pair, round, count, swap, captured);
+        queue.add(job);
+        return job.result;
+    }
+
+    // Stops the worker processes once every queued job is done.
+    public void shutdown()
+    {
+        for (int i = 0; i < threads.size(); i++)
+            queue.add(stop);
+        for (Thread thread : threads)
+        {
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void serve(int id)
+    {
+        Connection connection = null;
+        try
+        {
+            for (;;)
+            {
+                Job job = queue.take();
+                if (job == stop)
+                    break;
+                List<Log.Line> notes = new ArrayList<Log.Line>();
+                for (int attempt = 1; ; attempt++)
+                {
+                    try
+                    {
+                        if (connection == null)
+                            connection = start();
+                        send(connection, job);
+                        receive(connection, job, notes);
+                        break;
+                    }
+                    catch (IOException ex)
+                    {
+                        destroy(connection);
+                        connection = null;
+                        boolean retry = attempt < max_attempts;
+                        notes.add(new Log.Line(System.currentTimeMillis(), "Worker " + id + " stopped while playing game " + job.round
+                                + " between " + job.pair.getKey() + " and " + job.pair.getValue() + (retry ? ", starting it again." : ", giving up on the game.")));
+                        if (!retry)
+                        {
+                            job.captured.set(job.index, notes);
+                            job.result.completeExceptionally(new WorkerException("Worker stopped " + max_attempts + " times."));
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            stop(connection);
+        }
+    }
+
+    private Connection start() throws IOException
+    {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Connection connection = new Connection();
+        connection.process = builder.start();
+        connection.in = new DataInputStream(new BufferedInputStream(connection.process.getInputStream()));
+        connection.out = new DataOutputStream(new BufferedOutputStream(connection.process.getOutputStream()));
+        return connection;
+    }
+
+    private static void send(Connection connection, Job job) throws IOException
+    {
+        DataOutputStream out = connection.out;
+        out.writeInt(job.index);
+        Worker.write_string(out, job.pair.getKey());
+        Worker.write_string(out, job.pair.getValue());
+        out.writeInt(job.round);
+        out.writeInt(job.count);
+        out.writeBoolean(job.swap);
+        out.flush();
+    }
+
+    private void receive(Connection connection, Job job, List<Log.Line> notes) throws IOException
+    {
+        DataInputStream in = connection.in;
+        if (in.readInt() != job.index)
+            throw new IOException("Answer to another job");
+        List<Log.Line> lines = Worker.read_lines(in);
+        int size = in.readInt();
+        List<GameResult> played = null;
+        String failure = null;
+        if (size < 0)
+            failure = Worker.read_string(in);
+        else
+        {
+            played = new ArrayList<GameResult>(size);
+            for (int i = 0; i < size; i++)
+            {
+                if (!in.readBoolean())
+                {
+                    played.add(null);
+                    continue;
+                }
+                String player1 = Worker.read_string(in);
+                String player2 = Worker.read_string(in);
+                int player1_score = in.readInt();
+                int player2_score = in.readInt();
+                GameDetails details = in.readBoolean() ? GameDetails.read(in) : null;
+                played.add(new GameResult(player1, player2, player1_score, player2_score, details));
+            }
+        }
+        int hits = in.readInt();
+        int stores = in.readInt();
+        if (cache != null)
+            cache.count(hits, stores);
+        PlayerStats.receive(in);
+
+        notes.addAll(lines);
+        job.captured.set(job.index, notes);
+        if (played == null)
+            job.result.completeExceptionally(new WorkerException(failure));
+        else
+            job.result.complete(played);
+    }
+
+    private static void stop(Connection connection)
+    {
+        if (connection == null)
+            return;
+        try
+        {
+            connection.out.writeInt(-1);
+            connection.out.flush();
+            connection.process.waitFor();
+        }
+        catch (IOException ex)
+        {
+            destroy(connection);
+        }
+        catch (InterruptedException ex)
+        {
+            destroy(connection);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void destroy(Connection connection)
+    {
+        if (connection != null)
+            connection.process.destroyForcibly();
+    }
+}
@@ -1,23 +1,32 @@
+// The board as [x_min, x_max, y_min, y_max, endzone_x, diameter], sent with every keyframe.
+// The canvas keeps its width and gets the height that fits the board.
+var arena = [-60, 60, -20, 20, 20, 2];
+
+function scale(canvas) {
+    return canvas.width / (arena[1] - arena[0]);
+}
+
 function drawBorder(ctx)
 {
     ctx.beginPath();
     ctx.lineWidth="4";
     ctx.strokeStyle="black";
-    ctx.rect(0,0,1200,400);
+    ctx.rect(0,0,ctx.canvas.width,ctx.canvas.height);
     ctx.stroke();
 }
 
 function drawPieces(ctx, pieces, color) {
+    var s = scale(ctx.canvas);
     for (var i = 0; i < pieces.length; i++) {
         var piece = pieces[i];
         //console.log(bale);
-        var drawX = ((piece.x + 60) /120) * 1200;
-        var drawY = ((piece.y + 20) /40) * 400;
+        var drawX = (piece.x - arena[0]) * s;
+        var drawY = (piece.y - arena[2]) * s;
         //console.log(drawX);
         //console.log(drawY);
         ctx.beginPath();
         ctx.fillStyle=color;
-        ctx.arc(drawX, drawY, 10, 0, 2*Math.PI);
+        ctx.arc(drawX, drawY, arena[5] / 2 * s, 0, 2*Math.PI);
         ctx.fill();
     }
 }
@@ -32,13 +41,37 @@ function drawLine(ctx, x_start, y_start, x_end, y_end) {
 
 var y_pos = 40;
 
+// Pieces as last drawn. A keyframe lists every piece as [x, y, x, y, ...]; the frames
+// in between only list the pieces that moved, as [id, x, y, id, x, y, ...].
+var player1_pieces = [];
+var player2_pieces = [];
+
+function loadPieces(coords) {
+    var pieces = [];
+    for (var i = 0; i + 1 < coords.length; i += 2)
+        pieces.push({x: coords[i], y: coords[i + 1]});
+    return pieces;
+}
+
+function movePieces(pieces, moves) {
+    for (var i = 0; i + 2 < moves.length; i += 3)
+        pieces[moves[i]] = {x: moves[i + 1], y: moves[i + 2]};
+}
+
 function process(data) {
     var result = JSON.parse(data)
 
     console.log(result);
     var refresh = parseFloat(result.refresh);
-    var player1_pieces = result.player1_pieces;
-    var player2_pieces = result.player2_pieces;
+    if (result.keyframe) {
+        if (result.arena)
+            arena = result.arena;
+        player1_pieces = loadPieces(result.player1_pieces);
+        player2_pieces = loadPieces(result.player2_pieces);
+    } else {
+        movePieces(player1_pieces, result.player1_moves);
+        movePieces(player2_pieces, result.player2_moves);
+    }
     var player1 = result.player1;
     var player2 = result.player2;
     var player1_score = result.player1_score;
@@ -49,13 +82,17 @@ function process(data) {
     canvas = document.getElementById('canvas');
     ctx = canvas.getContext('2d');
     
+    var height = Math.round((arena[3] - arena[2]) * scale(canvas));
+    if (canvas.height != height)
+        canvas.height = height;
     ctx.clearRect(0, 0, canvas.width, canvas.height);
     
     drawBorder(ctx);
     drawPieces(ctx, player1_pieces, "red");
     drawPieces(ctx, player2_pieces, "blue");
-    drawLine(ctx, 800, 0, 800, 400);
-    drawLine(ctx, 400, 0, 400, 400);
+    var s = scale(canvas);
+    drawLine(ctx, (arena[4] - arena[0]) * s, 0, (arena[4] - arena[0]) * s, canvas.height);
+    drawLine(ctx, (-arena[4] - arena[0]) * s, 0, (-arena[4] - arena[0]) * s, canvas.height);
     
     timeElement = document.getElementById('time');
     timeElement.innerHTML = "<pre>" + "Remaining Turns: " + remaining_turns + "\tRound: " + curr_round + "<font color=\"red\">"+ "\n\n\nPlayer 1: " + "</font>" +  player1 + "<font color=\"blue\">"+"\tPlayer 2:" + "</font>" + player2  + "\nPlayer 1 score: " + player1_score + "\tPlayer 2 score: " + player2_score + "</pre>" ;
@@ -63,50 +100,49 @@ function process(data) {
     return refresh;
 }
 
-var latest_version = -1;
+var latest_frame = 0;
 
-function ajax(version, retries, timeout) {
-    console.log("Version " + version);
+// Asks for the frame after the last one shown. The simulator does not wait for us: the
+// server answers with the next frame it still has, or with 204 if none arrived in time.
+function ajax(retries, timeout) {
     var xhttp = new XMLHttpRequest();
     xhttp.onload = (function() {
-            var refresh = -1;
+            var refresh = 0;
             try {
                 if (xhttp.readyState != 4)
                     throw "Incomplete HTTP request: " + xhttp.readyState;
-                if (xhttp.status != 200)
+                if (xhttp.status == 200) {
+                    //console.log(xhttp.responseText);
+                    refresh = process(xhttp.responseText);
+                    latest_frame = parseInt(xhttp.getResponseHeader("X-Frame"));
+                }
+                else if (xhttp.status != 204)
                     throw "Invalid HTTP status: " + xhttp.status;
-                //console.log(xhttp.responseText);
-                refresh = process(xhttp.responseText);
-                if (latest_version < version)
-                    latest_version = version;
-                else refresh = -1;
             } catch (message) {
                 alert(message);
+                return;
             }
 
-            console.log(refresh);
-            if (refresh >= 0)
-                setTimeout(function() { ajax(version + 1, 10, 100); }, refresh);
+            console.log("Frame " + latest_frame);
+            setTimeout(function() { ajax(10, 5000); }, refresh);
         });
     xhttp.onabort = (function() { location.reload(true); });
     xhttp.onerror = (function() { location.reload(true); });
     xhttp.ontimeout = (function() {
-            if (version <= latest_version)
-                console.log("AJAX timeout (version " + version + " <= " + latest_version + ")");
-            else if (retries == 0)
+            if (retries == 0)
                 location.reload(true);
             else {
-                console.log("AJAX timeout (version " + version + ", retries: " + retries + ")");
-                ajax(version, retries - 1, timeout * 2);
+                console.log("AJAX timeout (frame " + latest_frame + ", retries: " + retries + ")");
+                ajax(retries - 1, timeout * 2);
             }
         });
-    xhttp.open("GET", "data.txt", true);
+    xhttp.open("GET", "data.txt?after=" + latest_frame, true);
     xhttp.responseType = "text";
     xhttp.timeout = timeout;
     xhttp.send();
 }
 
-ajax(1, 10, 100);
+ajax(10, 5000);
 
 // process('{"refresh":0, "grp_a":"g1", "grp_b":"g2", "grp_a_round":"1,2,3,4,5", "grp_b_round":"4,5,6,7,8",' +
 //    '"grp_a_skills":"4,3,2,5,6,7,3", "grp_b_skills":"2,3,5,7,5,4,3", "grp_a_dist":"1,2;4,3;6,7", "grp_b_dist":"3,4;5,1;8,7", ' +